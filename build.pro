@@ -10,12 +10,18 @@ packager.
 
 resolver.
     dependencies(list(
-        "org.objectweb.asm=org.ow2.asm:asm:6.0",
+        "org.objectweb.asm=org.ow2.asm:asm:9.8",
+        "org.objectweb.asm.tree=org.ow2.asm:asm-tree:9.8",
         "org.junit.jupiter.api=org.junit.jupiter:junit-jupiter-api:5.0.3",
         "org.junit.jupiter.params=org.junit.jupiter:junit-jupiter-params:5.0.3",
         "org.junit.platform.commons=org.junit.platform:junit-platform-commons:1.0.3",
         "org.apiguardian.api=org.apiguardian:apiguardian-api:1.0.0",
-        "org.opentest4j=org.opentest4j:opentest4j:1.0.0"
+        "org.opentest4j=org.opentest4j:opentest4j:1.0.0",
+        // JMH benchmarks (src/perf), compiled and run on the class path by src/bach/Build.java
+        "jmh.core=org.openjdk.jmh:jmh-core:1.37",
+        "jmh.generator.annprocess=org.openjdk.jmh:jmh-generator-annprocess:1.37",
+        "jopt.simple=net.sf.jopt-simple:jopt-simple:5.0.4",
+        "commons.math3=org.apache.commons:commons-math3:3.6.1"
     ))
 
 run(resolver, modulefixer, compiler, packager, tester)
@@ -1,17 +1,25 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 interface Build {
 
 	Path SOURCE_MAIN = Paths.get("src", "main", "java");
 	Path SOURCE_TEST = Paths.get("src", "test", "java");
+	Path SOURCE_PERF = Paths.get("src", "perf", "java");
 
 	Path MODULES = Paths.get("bin", "bach", "modules");
 	Path TARGET = Paths.get("bin", "bach", "target");
 	Path TARGET_MAIN = TARGET.resolve("classes/main");
 	Path TARGET_TEST = TARGET.resolve("classes/test");
+	Path TARGET_PERF = TARGET.resolve("classes/perf");
 	Path JAVADOC = TARGET.resolve("javadoc");
 	Path ARTIFACTS = TARGET.resolve("artifacts");
 
@@ -27,6 +35,10 @@ interface Build {
 		jdeps();
 		compileTest();
 		test();
+		if (Boolean.getBoolean("build.perf")) {
+			compilePerf();
+			perf();
+		}
 	}
 
 	static void resolveRequiredModules() {
@@ -41,8 +53,15 @@ interface Build {
 		resolve("org.junit.platform", "junit-platform-engine", platformVersion);
 		resolve("org.junit.platform", "junit-platform-launcher", platformVersion);
 		// 3rd-party modules
+		resolve("org.ow2.asm", "asm", "9.8");
+		resolve("org.ow2.asm", "asm-tree", "9.8");
 		resolve("org.opentest4j", "opentest4j", "1.0.0");
 		resolve("org.apiguardian", "apiguardian-api", "1.0.0");
+		// JMH, not modular, only used on the class path by the benchmarks
+		resolve("org.openjdk.jmh", "jmh-core", "1.37");
+		resolve("org.openjdk.jmh", "jmh-generator-annprocess", "1.37");
+		resolve("net.sf.jopt-simple", "jopt-simple", "5.0.4");
+		resolve("org.apache.commons", "commons-math3", "3.6.1");
 	}
 
 	static Path resolve(String group, String artifact, String version) {
@@ -79,6 +98,47 @@ interface Build {
 		java.run();
 	}
 
+	static void compilePerf() throws Exception {
+		System.out.printf("%n[perf][compile]%n%n");
+		List<Object> args = new ArrayList<>(List.of(
+				"-d",
+				TARGET_PERF,
+				"-classpath",
+				perfClassPath()));
+		try(Stream<Path> stream = Files.walk(SOURCE_PERF)) {
+			args.addAll(stream.filter(path -> path.toString().endsWith(".java")).collect(Collectors.toList()));
+		}
+		Bach.run("javac", args.toArray());
+	}
+
+	static void perf() {
+		System.out.printf("%n[perf]%n%n");
+		Bach.run("java",
+				"-classpath",
+				TARGET_PERF + File.pathSeparator + perfClassPath(),
+				"org.openjdk.jmh.Main",
+				"-prof",
+				"gc",
+				"-rf",
+				"json",
+				"-rff",
+				ARTIFACTS.resolve("jmh-result.json"));
+	}
+
+	private static String perfClassPath() {
+		var jars = Stream.of("jmh-core", "jmh-generator-annprocess", "jopt-simple", "commons-math3")
+				.map(artifact -> {
+					try(Stream<Path> stream = Files.list(MODULES)) {
+						return stream.filter(path -> path.getFileName().toString().startsWith(artifact + "-")).findFirst().orElseThrow();
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+		return Stream.concat(Stream.of(TARGET_MAIN.resolve("com.github.forax.beautifullogger")), jars)
+				.map(Path::toString)
+				.collect(Collectors.joining(File.pathSeparator));
+	}
+
 	static void javadoc() throws Exception {
 		System.out.printf("%n[javadoc]%n%n");
 		Files.createDirectories(JAVADOC);
@@ -89,7 +149,7 @@ interface Build {
 				"-package",
 				"-linksource",
 				"-link",
-				"https://docs.oracle.com/javase/9/docs/api",
+				"https://docs.oracle.com/en/java/javase/17/docs/api",
 				"-d",
 				JAVADOC,
 				"-sourcepath",
@@ -0,0 +1,293 @@
+package com.github.forax.beautifullogger.tool;
+
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEDYNAMIC;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+// Remove the calls to the Logger methods of some levels (trace and debug by default)
+// from compiled classes, to be run on the classes of an application for a release build.
+// If the instructions that push the logger and the arguments have no side effect
+// (load, constant, field read, boxing, lambda creation, string concatenation), they are removed with the call,
+// so the lambda is neither linked nor allocated. Otherwise, only the call is replaced by pops.
+// A static field of another class and a dynamic constant are not pure, reading them may initialize a class.
+// The stack is the same before and after a removed sequence, so the stack map frames are still valid.
+//
+// usage: LoggerCallElider [--levels=trace,debug] directory...
+public class LoggerCallElider {
+  private static final String LOGGER = "com/github/forax/beautifullogger/Logger";
+  private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+  private static final String STRING_CONCAT_FACTORY = "java/lang/invoke/StringConcatFactory";
+
+  private final Set<String> levels;
+  private int removedCalls;
+  private int removedSequences;
+
+  public LoggerCallElider(Set<String> levels) {
+    this.levels = Set.copyOf(levels);
+  }
+
+  public static void main(String[] args) throws IOException {
+    Set<String> levels = Set.of("trace", "debug");
+    List<Path> directories = new ArrayList<>();
+    for(String arg: args) {
+      if (arg.startsWith("--levels=")) {
+        levels = Arrays.stream(arg.substring("--levels=".length()).split(","))
+            .map(level -> level.trim().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toSet());
+        continue;
+      }
+      directories.add(Path.of(arg));
+    }
+    if (directories.isEmpty()) {
+      System.err.println("usage: LoggerCallElider [--levels=trace,debug] directory...");
+      System.exit(1);
+      return;
+    }
+
+    LoggerCallElider elider = new LoggerCallElider(levels);
+    for(Path directory: directories) {
+      elider.rewriteDirectory(directory);
+    }
+    System.out.println(elider.removedCalls + " logger calls removed, " +
+        elider.removedSequences + " with their arguments");
+  }
+
+  public void rewriteDirectory(Path directory) throws IOException {
+    try(Stream<Path> stream = Files.walk(directory)) {
+      stream.filter(path -> path.toString().endsWith(".class")).forEach(path -> {
+        try {
+          byte[] code = Files.readAllBytes(path);
+          byte[] newCode = rewrite(code);
+          if (newCode != code) {
+            Files.write(path, newCode);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // returns the same array if the class does not call a removed logger method
+  public byte[] rewrite(byte[] code) {
+    ClassReader reader = new ClassReader(code);
+    ClassNode classNode = new ClassNode();
+    reader.accept(classNode, 0);
+    boolean modified = false;
+    for(MethodNode method: classNode.methods) {
+      modified |= rewrite(classNode.name, method);
+    }
+    if (!modified) {
+      return code;
+    }
+    // the frames are still valid, so they are not recomputed, it would require to load the classes
+    ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    classNode.accept(writer);
+    return writer.toByteArray();
+  }
+
+  private boolean rewrite(String className, MethodNode method) {
+    InsnList instructions = method.instructions;
+    if (instructions.size() == 0) {
+      return false;
+    }
+    Set<LabelNode> targets = jumpTargets(method);
+    boolean modified = false;
+    for(AbstractInsnNode insn = instructions.getFirst(); insn != null;) {
+      AbstractInsnNode next = insn.getNext();
+      if (isRemovedCall(insn)) {
+        removeCall(className, instructions, (MethodInsnNode)insn, targets);
+        modified = true;
+      }
+      insn = next;
+    }
+    return modified;
+  }
+
+  private boolean isRemovedCall(AbstractInsnNode insn) {
+    if (insn.getOpcode() != INVOKEINTERFACE) {
+      return false;
+    }
+    MethodInsnNode methodInsn = (MethodInsnNode)insn;
+    return methodInsn.owner.equals(LOGGER) && levels.contains(levelName(methodInsn.name));
+  }
+
+  // debugInt, debugLong and debugDouble are debug methods
+  private static String levelName(String methodName) {
+    return methodName.replaceFirst("(Int|Long|Double)$", "");
+  }
+
+  private void removeCall(String className, InsnList instructions, MethodInsnNode call, Set<LabelNode> targets) {
+    removedCalls++;
+    AbstractInsnNode start = findPureSequenceStart(className, call, targets);
+    if (start != null) {
+      removedSequences++;
+      for(AbstractInsnNode insn = start; insn != call;) {
+        AbstractInsnNode next = insn.getNext();
+        if (insn.getOpcode() != -1) {  // keep the labels, the line numbers and the frames
+          instructions.remove(insn);
+        }
+        insn = next;
+      }
+      instructions.remove(call);
+      return;
+    }
+
+    // pop the arguments and the logger
+    Type[] argumentTypes = Type.getArgumentTypes(call.desc);
+    InsnList pops = new InsnList();
+    for(int i = argumentTypes.length; --i >= 0;) {
+      pops.add(new InsnNode(argumentTypes[i].getSize() == 2? POP2: POP));
+    }
+    pops.add(new InsnNode(POP));
+    instructions.insert(call, pops);
+    instructions.remove(call);
+  }
+
+  // walk backward from the call until all the values consumed by the call are produced,
+  // returns null if an instruction may have a side effect or if the sequence contains a jump target
+  private static AbstractInsnNode findPureSequenceStart(String className, MethodInsnNode call, Set<LabelNode> targets) {
+    int needed = Type.getArgumentTypes(call.desc).length + 1;  // + the logger
+    for(AbstractInsnNode insn = call.getPrevious(); insn != null; insn = insn.getPrevious()) {
+      int opcode = insn.getOpcode();
+      if (opcode == -1) {
+        if (insn instanceof LabelNode && targets.contains(insn)) {
+          return null;
+        }
+        if (insn.getType() == AbstractInsnNode.FRAME) {
+          return null;
+        }
+        continue;
+      }
+      int consumed = pureConsumedValues(className, insn);
+      if (consumed == -1) {
+        return null;
+      }
+      // each pure instruction produces one value
+      needed = needed - 1 + consumed;
+      if (needed == 0) {
+        return insn;
+      }
+    }
+    return null;
+  }
+
+  // returns the number of values consumed by an instruction that produces one value without side effect
+  // or -1 otherwise, className is the class being rewritten
+  private static int pureConsumedValues(String className, AbstractInsnNode insn) {
+    int opcode = insn.getOpcode();
+    if ((opcode >= ACONST_NULL && opcode <= DCONST_1) || opcode == BIPUSH || opcode == SIPUSH) {
+      return 0;
+    }
+    if (opcode >= ILOAD && opcode <= ALOAD) {
+      return 0;
+    }
+    switch(opcode) {
+    case LDC:  // a dynamic constant calls its bootstrap method
+      return (((LdcInsnNode)insn).cst instanceof ConstantDynamic)? -1: 0;
+    case GETSTATIC:  // the class being rewritten is already initialized, another class may not be
+      return ((FieldInsnNode)insn).owner.equals(className)? 0: -1;
+    case GETFIELD:  // the logger is often stored in an instance field
+      return 1;
+    case CHECKCAST:
+      return 1;
+    case INVOKESTATIC:
+      return isBoxing((MethodInsnNode)insn)? 1: -1;
+    case INVOKEDYNAMIC: {
+      InvokeDynamicInsnNode indy = (InvokeDynamicInsnNode)insn;
+      Handle bsm = indy.bsm;
+      Type[] argumentTypes = Type.getArgumentTypes(indy.desc);
+      if (bsm.getOwner().equals(LAMBDA_METAFACTORY)) {
+        return argumentTypes.length;
+      }
+      // a string concatenation calls toString() on the objects, only the primitives and the strings are safe
+      if (bsm.getOwner().equals(STRING_CONCAT_FACTORY) &&
+          Arrays.stream(argumentTypes).allMatch(type -> type.getSort() <= Type.DOUBLE || type.getDescriptor().equals("Ljava/lang/String;"))) {
+        return argumentTypes.length;
+      }
+      return -1;
+    }
+    default:
+      return -1;
+    }
+  }
+
+  // Integer.valueOf(int), Long.valueOf(long), etc
+  private static boolean isBoxing(MethodInsnNode insn) {
+    return insn.name.equals("valueOf") && insn.owner.startsWith("java/lang/") &&
+        Type.getArgumentTypes(insn.desc).length == 1 &&
+        Type.getArgumentTypes(insn.desc)[0].getSort() <= Type.DOUBLE &&  // a primitive type
+        Type.getReturnType(insn.desc).getInternalName().equals(insn.owner);
+  }
+
+  private static Set<LabelNode> jumpTargets(MethodNode method) {
+    HashSet<LabelNode> targets = new HashSet<>();
+    for(AbstractInsnNode insn: method.instructions) {
+      if (insn instanceof JumpInsnNode) {
+        targets.add(((JumpInsnNode)insn).label);
+      } else if (insn instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode)insn;
+        targets.add(tableSwitch.dflt);
+        targets.addAll(tableSwitch.labels);
+      } else if (insn instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode)insn;
+        targets.add(lookupSwitch.dflt);
+        targets.addAll(lookupSwitch.labels);
+      }
+    }
+    for(TryCatchBlockNode tryCatch: method.tryCatchBlocks) {
+      targets.add(tryCatch.start);
+      targets.add(tryCatch.end);
+      targets.add(tryCatch.handler);
+    }
+    return targets;
+  }
+}
@@ -1,177 +1,173 @@
 package com.github.forax.beautifullogger.tool;
 
-import static java.nio.charset.StandardCharsets.ISO_8859_1;
-import static org.objectweb.asm.ClassReader.SKIP_CODE;
-import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
-import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
-import static org.objectweb.asm.Opcodes.ACC_FINAL;
-import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
-import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
-import static org.objectweb.asm.Opcodes.ACC_STATIC;
-import static org.objectweb.asm.Opcodes.ACC_SUPER;
-import static org.objectweb.asm.Opcodes.ACONST_NULL;
-import static org.objectweb.asm.Opcodes.ALOAD;
-import static org.objectweb.asm.Opcodes.ARETURN;
-import static org.objectweb.asm.Opcodes.ASM6;
-import static org.objectweb.asm.Opcodes.DLOAD;
-import static org.objectweb.asm.Opcodes.DUP;
-import static org.objectweb.asm.Opcodes.GETFIELD;
-import static org.objectweb.asm.Opcodes.GETSTATIC;
-import static org.objectweb.asm.Opcodes.ILOAD;
-import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
-import static org.objectweb.asm.Opcodes.INVOKESTATIC;
-import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
-import static org.objectweb.asm.Opcodes.LLOAD;
-import static org.objectweb.asm.Opcodes.NEW;
-import static org.objectweb.asm.Opcodes.PUTFIELD;
-import static org.objectweb.asm.Opcodes.RETURN;
-import static org.objectweb.asm.Opcodes.V9;
+import static java.util.stream.Collectors.joining;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.function.BiFunction;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
+import com.github.forax.beautifullogger.Logger;
 
+// Generate the source of the class LoggerStub that implements the Logger interface,
+// each method calls the method handle corresponding to its shape with the level as a constant.
+// The stub is a record because the JITs trust the final fields of a record as constants,
+// so the method handles are constant folded when the logger is stored in a static final.
+//
+// usage: LoggerGenerator [path/to/LoggerStub.java]
 public class LoggerGenerator {
+  private static final int MAX_PARAMETERS = 4;
+  private static final Path DEFAULT_PATH = Path.of(
+      "src/main/java/com.github.forax.beautifullogger/com/github/forax/beautifullogger/LoggerStub.java");
+
   public static void main(String[] args) throws IOException {
-    ClassWriter writer = new ClassWriter(COMPUTE_MAXS|COMPUTE_MAXS);
-    writer.visit(V9, ACC_SUPER,
-        "com/github/forax/beautifullogger/Logger$Stub", null,
-        "java/lang/Object",
-        new String[] {"com/github/forax/beautifullogger/Logger"});
-    
-    // field
-    writer.visitField(ACC_PRIVATE|ACC_FINAL, "mh", "Ljava/lang/invoke/MethodHandle;", null, null);
-    
-    // constructor
-    MethodVisitor init = writer.visitMethod(ACC_PRIVATE, "<init>", "(Ljava/lang/invoke/MethodHandle;)V", null, null);
-    init.visitCode();
-    init.visitVarInsn(ALOAD, 0);
-    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
-    init.visitVarInsn(ALOAD, 0);
-    init.visitVarInsn(ALOAD, 1);
-    init.visitFieldInsn(PUTFIELD, "com/github/forax/beautifullogger/Logger$Stub", "mh", "Ljava/lang/invoke/MethodHandle;");
-    init.visitInsn(RETURN);
-    init.visitMaxs(0, 0);
-    init.visitEnd();
-    
-    // static factory method
-    MethodVisitor factory = writer.visitMethod(ACC_PUBLIC|ACC_STATIC, "create",
-        "(Ljava/lang/invoke/MethodHandle;)Lcom/github/forax/beautifullogger/Logger;", null, null);
-    factory.visitCode();
-    factory.visitTypeInsn(NEW, "com/github/forax/beautifullogger/Logger$Stub");
-    factory.visitInsn(DUP);
-    factory.visitVarInsn(ALOAD, 0);
-    factory.visitMethodInsn(INVOKESPECIAL, "com/github/forax/beautifullogger/Logger$Stub", "<init>",
-        "(Ljava/lang/invoke/MethodHandle;)V", false);
-    factory.visitInsn(ARETURN);
-    factory.visitMaxs(0, 0);
-    factory.visitEnd();
-    
-    // method
-    Path loggerClass = Paths.get("target/main/exploded/com.github.forax.beautifullogger/com/github/forax/beautifullogger/Logger.class");
-    ClassReader reader = new ClassReader(Files.readAllBytes(loggerClass));
-    reader.accept(new ClassVisitor(ASM6) {
-      @Override
-      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-        if ((access & ACC_ABSTRACT) == 0) {  // implement abstract method
-          return null;
-        }
-        
-        MethodVisitor mv = writer.visitMethod(access & (~ACC_ABSTRACT), name, desc, signature, exceptions);
-        mv.visitAnnotation("Ljava/lang/invoke/LambdaForm$Hidden;", true)
-          .visitEnd();
-        mv.visitAnnotation("Ljdk/internal/vm/annotation/ForceInline;", true)
-          .visitEnd();
-        mv.visitCode();
-        mv.visitVarInsn(ALOAD, 0);
-        mv.visitFieldInsn(GETFIELD, "com/github/forax/beautifullogger/Logger$Stub", "mh",
-            "Ljava/lang/invoke/MethodHandle;");
-        mv.visitFieldInsn(GETSTATIC, "com/github/forax/beautifullogger/Logger$Level", name.toUpperCase(),
-            "Lcom/github/forax/beautifullogger/Logger$Level;");
-        switch(Type.getArgumentTypes(desc)[0].getDescriptor()) {
-          case "Ljava/lang/String;":  // message + throwable
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitVarInsn(ALOAD, 1);
-            genNONE(mv, 4);
-            break;
-          case "Ljava/util/function/Supplier;":
-            mv.visitInsn(ACONST_NULL);
-            mv.visitVarInsn(ALOAD, 1);
-            genNONE(mv, 4);
-            break;
-          case "Ljava/util/function/Function;":
-            mv.visitInsn(ACONST_NULL);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 2);
-            genNONE(mv, 3);
-            break;
-          case "Ljava/util/function/IntFunction;":
-            mv.visitInsn(ACONST_NULL);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ILOAD, 2);
-            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
-            genNONE(mv, 3);
-            break;
-          case "Ljava/util/function/LongFunction;":
-            mv.visitInsn(ACONST_NULL);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(LLOAD, 2);
-            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
-            genNONE(mv, 3);
-            break;
-          case "Ljava/util/function/DoubleFunction;":
-            mv.visitInsn(ACONST_NULL);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(DLOAD, 2);
-            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", false);
-            genNONE(mv, 3);
-            break;
-          case "Ljava/util/function/BiFunction;":
-            mv.visitInsn(ACONST_NULL);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitVarInsn(ALOAD, 3);
-            genNONE(mv, 2);
-            break;
-          default:
-            throw new AssertionError("invalid method descriptor " + name + desc);
-        }
-        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact",
-            "(Lcom/github/forax/beautifullogger/Logger$Level;Ljava/lang/Throwable;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V",
-            false);
-        
-        mv.visitInsn(RETURN);
-        mv.visitMaxs(-1, -1);
-        mv.visitEnd();
-        
-        return null;
-      }
-      
-      private void genNONE(MethodVisitor mv, int count) {
-        for(int i = 0; i < count; i++) {
-          mv.visitFieldInsn(Opcodes.GETSTATIC, "com/github/forax/beautifullogger/LoggerImpl", "NONE", "Ljava/lang/Object;");
-        }
+    Path path = args.length == 0? DEFAULT_PATH: Path.of(args[0]);
+    Files.writeString(path, generate());
+  }
+
+  static String generate() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("""
+        package com.github.forax.beautifullogger;
+
+        import java.lang.invoke.MethodHandle;
+        import java.util.function.BiFunction;
+        import java.util.function.DoubleFunction;
+        import java.util.function.Function;
+        import java.util.function.IntFunction;
+        import java.util.function.LongFunction;
+        import java.util.function.Supplier;
+
+        import com.github.forax.beautifullogger.Logger.Level;
+
+        // GENERATED by com.github.forax.beautifullogger.tool.LoggerGenerator, DO NOT EDIT
+        // one method handle by call site shape, the primitive ones avoid boxing
+        record LoggerStub(MethodHandle mh, MethodHandle mhInt, MethodHandle mhLong, MethodHandle mhDouble,
+                          MethodHandle mhObjInt, MethodHandle mhObjLong, MethodHandle mhObjDouble) implements Logger {
+          private static final Object NONE = LoggerImpl.NONE;
+        """);
+    Arrays.stream(Logger.class.getMethods())
+        .filter(method -> Modifier.isAbstract(method.getModifiers()))
+        .sorted(Comparator.comparingInt(LoggerGenerator::methodIndex)
+            .thenComparingInt(method -> providerIndex(method.getParameterTypes()[0])))
+        .forEach(method -> generateMethod(builder, method));
+    builder.append("}\n");
+    return builder.toString();
+  }
+
+  private static final Class<?>[] PROVIDERS = {
+      String.class, Supplier.class, Function.class, IntFunction.class, LongFunction.class, DoubleFunction.class, BiFunction.class,
+      Logger.TriFunction.class, Logger.QuadFunction.class,
+      Logger.ObjIntFunction.class, Logger.ObjLongFunction.class, Logger.ObjDoubleFunction.class,
+      Logger.MessageAppender.class
+  };
+
+  // methods by level from ERROR to TRACE, then the structured event method
+  private static int methodIndex(Method method) {
+    if (method.getName().equals("event")) {
+      return Integer.MAX_VALUE;
+    }
+    return -Logger.Level.valueOf(levelName(method)).ordinal();
+  }
+
+  // errorInt, errorLong and errorDouble are error methods
+  private static String levelName(Method method) {
+    return method.getName().replaceFirst("(Int|Long|Double)$", "").toUpperCase();
+  }
+
+  private static int providerIndex(Class<?> provider) {
+    if (provider == Logger.Level.class) {  // structured event
+      return 0;
+    }
+    int index = Arrays.asList(PROVIDERS).indexOf(provider);
+    if (index == -1) {
+      throw new AssertionError("unknown message provider " + provider.getName());
+    }
+    return index;
+  }
+
+  private static void generateMethod(StringBuilder builder, Method method) {
+    Type[] parameterTypes = method.getGenericParameterTypes();
+    Class<?> provider = method.getParameterTypes()[0];
+    TypeVariable<Method>[] typeParameters = method.getTypeParameters();
+
+    builder.append("  \n  @Override\n  public ");
+    if (typeParameters.length != 0) {
+      builder.append(Arrays.stream(typeParameters).map(TypeVariable::getName).collect(joining(", ", "<", "> ")));
+    }
+    builder.append("void ").append(method.getName()).append('(')
+        .append(IntStream.range(0, parameterTypes.length)
+            .mapToObj(i -> simpleName(parameterTypes[i]) + " " + name(i, provider))
+            .collect(joining(", ")))
+        .append(") {\n");
+
+    String level = "Level." + levelName(method);
+    String field;
+    String arguments;
+    if (provider == Logger.Level.class) {  // structured event, the fields are the message provider
+      field = "mh";
+      arguments = "level, (Throwable)null, (Object)fields, (Object)event" + nones(MAX_PARAMETERS - 1);
+    } else if (provider == String.class) {  // message + throwable
+      field = "mh";
+      arguments = level + ", context, (Object)message" + nones(MAX_PARAMETERS);
+    } else if (provider == IntFunction.class || provider == LongFunction.class || provider == DoubleFunction.class) {
+      field = provider == IntFunction.class? "mhInt": provider == LongFunction.class? "mhLong": "mhDouble";
+      arguments = level + ", (Throwable)null, (Object)messageProvider, arg0";
+    } else if (provider == Logger.ObjIntFunction.class || provider == Logger.ObjLongFunction.class || provider == Logger.ObjDoubleFunction.class) {
+      field = provider == Logger.ObjIntFunction.class? "mhObjInt": provider == Logger.ObjLongFunction.class? "mhObjLong": "mhObjDouble";
+      arguments = level + ", (Throwable)null, (Object)messageProvider, (Object)arg0, arg1";
+    } else {
+      field = "mh";
+      int count = parameterTypes.length - 1;
+      StringBuilder args = new StringBuilder();
+      for(int i = 0; i < count; i++) {
+        args.append(", (Object)arg").append(i);
       }
-      
-    }, SKIP_CODE);
-    
-    writer.visitEnd();
-    
-    byte[] array = writer.toByteArray();
-    
-    //DEBUG
-    Files.write(Paths.get("Logger$Stub.class"), array);
-    
-    String data = new String(Base64.getEncoder().encode(array), ISO_8859_1);
-    System.out.println(data);
+      arguments = level + ", (Throwable)null, (Object)messageProvider" + args + nones(MAX_PARAMETERS - count);
+    }
+    builder.append("    try {\n")
+        .append("      ").append(field).append(".invokeExact(").append(arguments).append(");\n")
+        .append("    } catch (Throwable e) {\n")
+        .append("      throw LoggerImpl.rethrow(e);\n")
+        .append("    }\n")
+        .append("  }\n");
+  }
+
+  private static String simpleName(Type type) {
+    return type.getTypeName()
+        .replace("com.github.forax.beautifullogger.Logger$", "")
+        .replace("java.lang.", "")
+        .replace("java.util.function.", "");
+  }
+
+  // parameter names are not stored in the class file of the interface
+  private static String name(int index, Class<?> provider) {
+    if (provider == Logger.Level.class) {
+      return new String[] { "level", "event", "fields" }[index];
+    }
+    if (index == 0) {
+      return provider == String.class? "message": "messageProvider";
+    }
+    if (provider == String.class) {
+      return "context";
+    }
+    return "arg" + (index - 1);
+  }
+
+  private static String nones(int count) {
+    return String.join("", Collections.nCopies(count, ", NONE"));
   }
 }
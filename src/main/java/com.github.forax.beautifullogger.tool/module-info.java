@@ -1,3 +1,4 @@
 open module com.github.forax.beautifullogger.tool {
-  requires org.objectweb.asm;
+  requires com.github.forax.beautifullogger;
+  requires org.objectweb.asm.tree;
 }
@@ -0,0 +1,301 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.AsyncPrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.OverflowPolicy;
+import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
+
+class AsyncPrintFactoryImpl implements AsyncPrintFactory {
+  static final MethodType PRINT_TYPE = methodType(void.class, String.class, Level.class, Throwable.class);
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+  private static final MethodHandle ENQUEUE;
+  private static final VarHandle HEAD, TAIL, SEQUENCES;
+  static {
+    MethodHandles.Lookup lookup = lookup();
+    try {
+      ENQUEUE = lookup.findVirtual(AsyncPrintFactoryImpl.class, "enqueue",
+          PRINT_TYPE.insertParameterTypes(0, MethodHandle.class));
+      HEAD = lookup.findVarHandle(AsyncPrintFactoryImpl.class, "head", long.class);
+      TAIL = lookup.findVarHandle(AsyncPrintFactoryImpl.class, "tail", long.class);
+      SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    } catch (NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final PrintFactory delegate;
+  private final OverflowPolicy policy;
+  private final LongAdder dropped = new LongAdder();
+
+  // a bounded multi-producer queue (D. Vyukov's algorithm) stored as parallel arrays,
+  // each slot has a sequence number that says if the slot is free or full for a given lap
+  private final int mask;
+  private final long[] sequences;
+  private final MethodHandle[] targets;
+  private final String[] messages;
+  private final Level[] levels;
+  private final Throwable[] contexts;
+
+  @SuppressWarnings("unused")  // used by a VarHandle
+  private volatile long head;
+  @SuppressWarnings("unused")  // used by a VarHandle
+  private volatile long tail;
+
+  // number of events printed by the consumer or dropped by a producer, see flush()
+  private final AtomicLong consumed = new AtomicLong();
+
+  private final Thread consumer;
+  private final Thread shutdownHook;
+  private volatile boolean sleeping;
+  private volatile boolean closed;
+
+  AsyncPrintFactoryImpl(PrintFactory delegate, int capacity, OverflowPolicy policy, ThreadFactory threadFactory) {
+    this.delegate = Objects.requireNonNull(delegate, "delegate is null");
+    this.policy = Objects.requireNonNull(policy, "policy is null");
+    Objects.requireNonNull(threadFactory, "threadFactory is null");
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity <= 0");
+    }
+    // round to the next power of 2, the algorithm requires at least 2 slots
+    int size = Math.max(2, Integer.highestOneBit(capacity));
+    if (size < capacity) {
+      size = size << 1;
+    }
+    this.mask = size - 1;
+    long[] sequences = new long[size];
+    for(int i = 0; i < size; i++) {
+      sequences[i] = i;
+    }
+    this.sequences = sequences;
+    this.targets = new MethodHandle[size];
+    this.messages = new String[size];
+    this.levels = new Level[size];
+    this.contexts = new Throwable[size];
+
+    Thread consumer = threadFactory.newThread(this::drain);
+    if (consumer == null) {
+      throw new IllegalStateException("thread factory returns null");
+    }
+    this.consumer = consumer;
+    consumer.start();
+
+    // the consumer is usually a daemon thread, the queued events are printed before the VM exits,
+    // unless the printer is stuck
+    Thread shutdownHook = new Thread(() -> close(SHUTDOWN_TIMEOUT_MILLIS), "beautiful-logger-async-shutdown");
+    this.shutdownHook = shutdownHook;
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  static ThreadFactory daemonThreadFactory() {
+    return runnable -> {
+      Thread thread = new Thread(runnable, "beautiful-logger-async");
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    MethodHandle target = delegate.getPrintMethodHandle(configClass).asType(PRINT_TYPE);
+    return insertArguments(ENQUEUE.bindTo(this), 0, target);
+  }
+
+  @Override
+  public long droppedEventCount() {
+    return dropped.sum();
+  }
+
+  @Override
+  public void flush() {
+    long tail = (long)TAIL.getVolatile(this);
+    while (consumed.get() < tail) {
+      if (closed) {
+        drainAll();
+        return;
+      }
+      LockSupport.unpark(consumer);
+      LockSupport.parkNanos(this, 100_000);
+    }
+  }
+
+  @Override
+  public void close() {
+    close(0);  // no timeout
+  }
+
+  private void close(long timeoutMillis) {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(consumer);
+    boolean interrupted = false;
+    for(;;) {
+      try {
+        consumer.join(timeoutMillis);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (!consumer.isAlive()) {
+      drainAll();
+    }
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // the VM is shutting down, close() is called by the hook
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // print the remaining events in the current thread once the consumer has stopped
+  private void drainAll() {
+    while (poll(true)) {
+      // empty
+    }
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void enqueue(MethodHandle target, String message, Level level, Throwable context) throws Throwable {
+    while (!offer(target, message, level, context)) {
+      // do not use a switch here, we want this code to be inlined !
+      if (policy == OverflowPolicy.DROP_NEWEST) {
+        dropped.increment();
+        return;
+      }
+      if (policy == OverflowPolicy.DROP_OLDEST) {
+        if (poll(false)) {
+          dropped.increment();
+        }
+        continue;
+      }
+      if (policy == OverflowPolicy.CALLER_RUNS) {
+        target.invokeExact(message, level, context);
+        return;
+      }
+      // BLOCK, wait for the consumer
+      if (closed) {
+        drainAll();
+        continue;
+      }
+      LockSupport.parkNanos(this, 10_000);
+    }
+    if (closed) {  // the consumer may have already stopped
+      drainAll();
+      return;
+    }
+    if (sleeping) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  private boolean offer(MethodHandle target, String message, Level level, Throwable context) {
+    long position = (long)TAIL.getVolatile(this);
+    for(;;) {
+      int index = (int)(position & mask);
+      long sequence = (long)SEQUENCES.getAcquire(sequences, index);
+      long diff = sequence - position;
+      if (diff == 0) {
+        if (TAIL.compareAndSet(this, position, position + 1)) {
+          targets[index] = target;
+          messages[index] = message;
+          levels[index] = level;
+          contexts[index] = context;
+          SEQUENCES.setVolatile(sequences, index, position + 1);
+          return true;
+        }
+        position = (long)TAIL.getVolatile(this);
+        continue;
+      }
+      if (diff < 0) {  // full
+        return false;
+      }
+      position = (long)TAIL.getVolatile(this);
+    }
+  }
+
+  // called by the consumer thread and by the producers if the policy is DROP_OLDEST
+  private boolean poll(boolean print) {
+    long position = (long)HEAD.getVolatile(this);
+    for(;;) {
+      int index = (int)(position & mask);
+      long sequence = (long)SEQUENCES.getAcquire(sequences, index);
+      long diff = sequence - (position + 1);
+      if (diff == 0) {
+        if (HEAD.compareAndSet(this, position, position + 1)) {
+          MethodHandle target = targets[index];
+          String message = messages[index];
+          Level level = levels[index];
+          Throwable context = contexts[index];
+          targets[index] = null;
+          messages[index] = null;
+          levels[index] = null;
+          contexts[index] = null;
+          SEQUENCES.setRelease(sequences, index, position + mask + 1);
+          if (print) {
+            print(target, message, level, context);
+          }
+          consumed.incrementAndGet();
+          return true;
+        }
+        position = (long)HEAD.getVolatile(this);
+        continue;
+      }
+      if (diff < 0) {  // empty
+        return false;
+      }
+      position = (long)HEAD.getVolatile(this);
+    }
+  }
+
+  private boolean isEmpty() {
+    long position = (long)HEAD.getVolatile(this);
+    long sequence = (long)SEQUENCES.getVolatile(sequences, (int)(position & mask));
+    return sequence != position + 1;
+  }
+
+  private static void print(MethodHandle target, String message, Level level, Throwable context) {
+    try {
+      target.invokeExact(message, level, context);
+    } catch (Throwable t) {
+      // the consumer thread must survive to a failing printer
+      Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+  }
+
+  private void drain() {
+    for(;;) {
+      if (poll(true)) {
+        continue;
+      }
+      if (closed) {
+        return;
+      }
+      sleeping = true;
+      if (isEmpty() && !closed) {
+        LockSupport.parkNanos(this, 100_000_000);
+      }
+      sleeping = false;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.empty;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+
+import java.lang.invoke.MethodHandle;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
+import com.github.forax.beautifullogger.LoggerImpl.EventFilterPrintFactory;
+import com.github.forax.beautifullogger.LoggerImpl.FilteredPrintFactory;
+
+// Only send the events with a level greater or equals to minLevel to the delegate.
+// The guards of the delegate are forwarded, and the level is also checked by the event filter,
+// so the message provider of an event below minLevel is not called.
+class AtLevelPrintFactory implements FilteredPrintFactory, EventFilterPrintFactory {
+  private final Level minLevel;
+  private final PrintFactory delegate;
+
+  AtLevelPrintFactory(Level minLevel, PrintFactory delegate) {
+    this.minLevel = minLevel;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    MethodHandle test = dropArguments(LoggerImpl.checkLevel(minLevel), 0, String.class);
+    return guardWithTest(test,
+        delegate.getPrintMethodHandle(configClass).asType(AsyncPrintFactoryImpl.PRINT_TYPE),
+        empty(AsyncPrintFactoryImpl.PRINT_TYPE));
+  }
+
+  @Override
+  public MethodHandle getIsEnabledMethodHandle(Class<?> configClass) {
+    if (delegate instanceof FilteredPrintFactory) {
+      return ((FilteredPrintFactory)delegate).getIsEnabledMethodHandle(configClass);
+    }
+    return constant(boolean.class, true);
+  }
+
+  @Override
+  public MethodHandle getEventFilterMethodHandle(Class<?> configClass) {
+    MethodHandle test = dropArguments(LoggerImpl.checkLevel(minLevel), 1, Throwable.class, Object.class);
+    if (delegate instanceof EventFilterPrintFactory) {
+      MethodHandle accept = ((EventFilterPrintFactory)delegate).getEventFilterMethodHandle(configClass);
+      return guardWithTest(test, accept, dropArguments(constant(boolean.class, false), 0, test.type().parameterList()));
+    }
+    return test;
+  }
+}
@@ -0,0 +1,544 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.BinaryLogPrintFactory;
+import com.github.forax.beautifullogger.LoggerImpl.DeferredPrintFactory;
+
+// A binary log that records the message provider and its arguments instead of the message,
+// the messages are formatted later by a decoder.
+//
+// Only the providers with no captured values (no instance field) are recorded, because
+// they can be called again by the decoder, the other providers are called eagerly.
+// Strings are stored in a dictionary, numbers are unboxed, other objects can not be
+// recorded, in that case the provider is also called eagerly.
+//
+// The file is a sequence of records, a record never spans two regions of the underlying
+// mapped file and a zero byte is a padding.
+//   SESSION
+//   STRING_DEF id:varint text:string
+//   PROVIDER_DEF id:varint className:string
+//   EVENT time:varint level:byte name:nameRef stackTrace:string? providerId:varint argCount:byte (arg)*
+//   MESSAGE time:varint level:byte name:nameRef stackTrace:string? message:string
+// with
+//   nameRef := (stringId + 1):varint | 0 string  (inline if the dictionary was full)
+//   string := length:varint utf8
+//   string? := 0 | (length + 1):varint utf8
+//   arg := 'I' zigzag:varint | 'J' zigzag:varint | 'D' 8 bytes | 'S' stringId:varint | 's' string | 'N'
+class BinaryEventLog implements BinaryLogPrintFactory, DeferredPrintFactory {
+  private static final byte PADDING = 0, SESSION = 1, STRING_DEF = 2, PROVIDER_DEF = 3, EVENT = 4, MESSAGE = 5;
+  private static final int MAX_DICTIONARY_SIZE = 4_096;
+
+  private static final MethodHandle PRINT, BEGIN, END, ARG, ARG_INT, ARG_LONG, ARG_DOUBLE;
+  static {
+    Lookup lookup = lookup();
+    try {
+      PRINT = lookup.findVirtual(BinaryEventLog.class, "print",
+          methodType(void.class, int.class, String.class, String.class, Level.class, Throwable.class));
+      BEGIN = lookup.findVirtual(BinaryEventLog.class, "begin",
+          methodType(Encoder.class, int.class, String.class, int.class, Level.class, Throwable.class));
+      END = lookup.findVirtual(BinaryEventLog.class, "end", methodType(boolean.class, Encoder.class));
+      ARG = lookup.findStatic(Encoder.class, "arg", methodType(void.class, Encoder.class, Object.class));
+      ARG_INT = lookup.findStatic(Encoder.class, "arg", methodType(void.class, Encoder.class, int.class));
+      ARG_LONG = lookup.findStatic(Encoder.class, "arg", methodType(void.class, Encoder.class, long.class));
+      ARG_DOUBLE = lookup.findStatic(Encoder.class, "arg", methodType(void.class, Encoder.class, double.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final Path path;
+  private final MappedFileAppender appender;
+  private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(() -> new Encoder(this));
+
+  private final ConcurrentHashMap<String, Integer> strings = new ConcurrentHashMap<>();
+  private final AtomicInteger stringCounter = new AtomicInteger();
+  private final ConcurrentHashMap<Class<?>, Integer> providerIds = new ConcurrentHashMap<>();
+  private final AtomicInteger providerCounter = new AtomicInteger();
+  private final ConcurrentHashMap<Integer, Object> providers = new ConcurrentHashMap<>();
+
+  BinaryEventLog(Path path, long regionSize) throws IOException {
+    this.path = Objects.requireNonNull(path, "path is null");
+    this.appender = new MappedFileAppender(path, regionSize);
+    appender.append(new byte[] { SESSION }, 0, 1);
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    String name = configClass.getName();
+    return insertArguments(PRINT.bindTo(this), 0, stringId(name), name);
+  }
+
+  @Override
+  public MethodHandle getRecordMethodHandle(Class<?> configClass, Object messageProvider, MethodType type) {
+    if (messageProvider instanceof String || isCapturing(messageProvider.getClass())) {
+      return null;
+    }
+    String name = configClass.getName();
+    int nameId = stringId(name);
+    int providerId = providerId(messageProvider);
+
+    // begin(level, context) then arg(argN) for each argument then end()
+    List<Class<?>> parameters = type.parameterList();
+    MethodHandle target = dropArguments(END.bindTo(this), 1, parameters);
+    for(int i = parameters.size(); --i >= 3;) {
+      MethodHandle arg = arg(parameters.get(i));
+      target = foldArguments(target, dropArguments(arg, 1, parameters.subList(0, i)));
+    }
+    return foldArguments(target, insertArguments(BEGIN.bindTo(this), 0, nameId, name, providerId));
+  }
+
+  private static MethodHandle arg(Class<?> type) {
+    if (type == int.class) {
+      return ARG_INT;
+    }
+    if (type == long.class) {
+      return ARG_LONG;
+    }
+    if (type == double.class) {
+      return ARG_DOUBLE;
+    }
+    return ARG.asType(methodType(void.class, Encoder.class, type));
+  }
+
+  private static boolean isCapturing(Class<?> providerClass) {
+    for(Class<?> type = providerClass; type != Object.class && type != null; type = type.getSuperclass()) {
+      for(Field field: type.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private int providerId(Object messageProvider) {
+    return providerIds.computeIfAbsent(messageProvider.getClass(), providerClass -> {
+      int id = providerCounter.getAndIncrement();
+      providers.put(id, messageProvider);
+      Encoder encoder = new Encoder(this);
+      encoder.writeByte(PROVIDER_DEF);
+      encoder.writeVarint(id);
+      encoder.writeString(providerClass.getName());
+      encoder.appendTo(appender);
+      return id;
+    });
+  }
+
+  // return -1 if the dictionary is full
+  int stringId(String text) {
+    Integer id = strings.get(text);
+    if (id != null) {
+      return id;
+    }
+    if (strings.size() >= MAX_DICTIONARY_SIZE) {
+      return -1;
+    }
+    return strings.computeIfAbsent(text, __ -> {
+      int newId = stringCounter.getAndIncrement();
+      Encoder encoder = new Encoder(this);
+      encoder.writeByte(STRING_DEF);
+      encoder.writeVarint(newId);
+      encoder.writeString(text);
+      encoder.appendTo(appender);
+      return newId;
+    });
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void print(int nameId, String name, String message, Level level, Throwable context) {
+    Encoder encoder = encoders.get();
+    encoder.reset();
+    encoder.writeByte(MESSAGE);
+    encoder.writeHeader(nameId, name, level, context);
+    encoder.writeString(String.valueOf(message));
+    encoder.appendTo(appender);
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private Encoder begin(int nameId, String name, int providerId, Level level, Throwable context) {
+    Encoder encoder = encoders.get();
+    encoder.reset();
+    encoder.writeByte(EVENT);
+    encoder.writeHeader(nameId, name, level, context);
+    encoder.writeVarint(providerId);
+    encoder.argCountPosition = encoder.position;
+    encoder.writeByte((byte)0);
+    return encoder;
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private boolean end(Encoder encoder) {
+    if (encoder.failed) {
+      return false;
+    }
+    encoder.array[encoder.argCountPosition] = (byte)encoder.argCount;
+    encoder.appendTo(appender);
+    return true;
+  }
+
+  static class Encoder {
+    private final BinaryEventLog log;
+    byte[] array = new byte[256];
+    int position;
+    int argCountPosition;
+    int argCount;
+    boolean failed;
+
+    Encoder(BinaryEventLog log) {
+      this.log = log;
+    }
+
+    void reset() {
+      position = 0;
+      argCount = 0;
+      failed = false;
+    }
+
+    void appendTo(MappedFileAppender appender) {
+      appender.append(array, 0, position);
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > array.length) {
+        array = Arrays.copyOf(array, Math.max(array.length << 1, position + length));
+      }
+    }
+
+    void writeByte(byte value) {
+      ensureCapacity(1);
+      array[position++] = value;
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        array[position++] = (byte)((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      array[position++] = (byte)value;
+    }
+
+    void writeString(String text) {
+      byte[] data = text.getBytes(UTF_8);
+      writeVarint(data.length);
+      ensureCapacity(data.length);
+      System.arraycopy(data, 0, array, position, data.length);
+      position += data.length;
+    }
+
+    void writeHeader(int nameId, String name, Level level, Throwable context) {
+      writeVarint(System.currentTimeMillis());
+      writeByte((byte)level.ordinal());
+      writeVarint(nameId + 1);
+      if (nameId == -1) {  // the dictionary was full
+        writeString(name);
+      }
+      if (context == null) {
+        writeVarint(0);
+      } else {
+        StringWriter writer = new StringWriter();
+        context.printStackTrace(new PrintWriter(writer));
+        byte[] data = writer.toString().getBytes(UTF_8);
+        writeVarint(data.length + 1);
+        ensureCapacity(data.length);
+        System.arraycopy(data, 0, array, position, data.length);
+        position += data.length;
+      }
+    }
+
+    static void arg(Encoder encoder, Object value) {
+      if (value == LoggerImpl.NONE) {
+        return;
+      }
+      if (value instanceof Integer) {
+        arg(encoder, (int)(Integer)value);
+        return;
+      }
+      if (value instanceof Long) {
+        arg(encoder, (long)(Long)value);
+        return;
+      }
+      if (value instanceof Double) {
+        arg(encoder, (double)(Double)value);
+        return;
+      }
+      encoder.argCount++;
+      if (value == null) {
+        encoder.writeByte((byte)'N');
+        return;
+      }
+      if (value instanceof String) {
+        String text = (String)value;
+        int id = encoder.log.stringId(text);
+        if (id == -1) {
+          encoder.writeByte((byte)'s');
+          encoder.writeString(text);
+        } else {
+          encoder.writeByte((byte)'S');
+          encoder.writeVarint(id);
+        }
+        return;
+      }
+      // other objects are not recorded
+      encoder.failed = true;
+    }
+
+    static void arg(Encoder encoder, int value) {
+      encoder.argCount++;
+      encoder.writeByte((byte)'I');
+      encoder.writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    static void arg(Encoder encoder, long value) {
+      encoder.argCount++;
+      encoder.writeByte((byte)'J');
+      encoder.writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    static void arg(Encoder encoder, double value) {
+      encoder.argCount++;
+      long bits = Double.doubleToRawLongBits(value);
+      encoder.writeByte((byte)'D');
+      encoder.ensureCapacity(8);
+      for(int i = 0; i < 8; i++) {
+        encoder.array[encoder.position++] = (byte)(bits >>> (i << 3));
+      }
+    }
+  }
+
+  @Override
+  public void flush() {
+    appender.flush();
+  }
+
+  @Override
+  public void close() {
+    appender.close();
+  }
+
+  @Override
+  public void decode(Appendable appendable) throws IOException {
+    decode(path, appendable, providers);
+  }
+
+  static void decode(Path path, Appendable appendable, Map<Integer, Object> liveProviders) throws IOException {
+    ByteBuffer buffer;
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    // first pass, definitions can be written after their first use, so collect them first
+    List<HashMap<Integer, String>> strings = new ArrayList<>();
+    List<HashMap<Integer, String>> providerNames = new ArrayList<>();
+    new Decoder(buffer.duplicate()).decode((tag, decoder) -> {
+      if (tag == SESSION) {
+        strings.add(new HashMap<>());
+        providerNames.add(new HashMap<>());
+        return;
+      }
+      if (tag == STRING_DEF) {
+        strings.get(strings.size() - 1).put((int)decoder.readVarint(), decoder.readString());
+        return;
+      }
+      if (tag == PROVIDER_DEF) {
+        providerNames.get(providerNames.size() - 1).put((int)decoder.readVarint(), decoder.readString());
+        return;
+      }
+      decoder.skipEvent(tag);
+    });
+
+    // second pass, decode the events, only the last session can use the live providers
+    int[] session = { -1 };
+    new Decoder(buffer.duplicate()).decode((tag, decoder) -> {
+      if (tag == SESSION) {
+        session[0]++;
+        return;
+      }
+      if (tag == STRING_DEF || tag == PROVIDER_DEF) {
+        decoder.readVarint();
+        decoder.readString();
+        return;
+      }
+      HashMap<Integer, String> dictionary = strings.get(session[0]);
+      long time = decoder.readVarint();
+      Level level = Level.LEVELS[decoder.readByte()];
+      String name = decoder.readName(dictionary);
+      String stackTrace = decoder.readOptionalString();
+      String message;
+      if (tag == EVENT) {
+        int providerId = (int)decoder.readVarint();
+        Object[] args = decoder.readArgs(dictionary);
+        Object provider = session[0] == strings.size() - 1? liveProviders.get(providerId): null;
+        message = (provider != null)?
+            format(provider, args):
+            providerNames.get(session[0]).getOrDefault(providerId, "?") + Arrays.toString(args);
+        appendable.append(LogLines.format(time, name, message, level, stackTrace));
+        return;
+      }
+      message = decoder.readString();
+      appendable.append(LogLines.format(time, name, message, level, stackTrace));
+    });
+  }
+
+  private static String format(Object provider, Object[] args) throws IOException {
+    Entry<Class<?>, MethodHandle> pair = LoggerImpl.findFunctionalInterfaceMH(provider);
+    Object[] arguments = new Object[args.length + 1];
+    arguments[0] = provider;
+    System.arraycopy(args, 0, arguments, 1, args.length);
+    try {
+      return (String)pair.getValue().invokeWithArguments(arguments);
+    } catch (Throwable e) {
+      throw new IOException("error while formatting with " + provider.getClass().getName(), e);
+    }
+  }
+
+  private static class Decoder {
+    interface RecordVisitor {
+      void visit(byte tag, Decoder decoder) throws IOException;
+    }
+
+    private final ByteBuffer buffer;
+
+    Decoder(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    void decode(RecordVisitor visitor) throws IOException {
+      while (buffer.hasRemaining()) {
+        int start = buffer.position();
+        byte tag = buffer.get();
+        if (tag == PADDING) {
+          continue;
+        }
+        try {
+          visitor.visit(tag, this);
+        } catch (RuntimeException e) {
+          // truncated record (not yet fully written), skip the rest of the log
+          buffer.position(start);
+          return;
+        }
+      }
+    }
+
+    byte readByte() {
+      return buffer.get();
+    }
+
+    long readVarint() {
+      long value = 0;
+      for(int shift = 0;; shift += 7) {
+        byte b = buffer.get();
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    String readString() {
+      int length = (int)readVarint();
+      return readUTF8(length);
+    }
+
+    String readOptionalString() {
+      int length = (int)readVarint();
+      return length == 0? null: readUTF8(length - 1);
+    }
+
+    private String readUTF8(int length) {
+      byte[] data = new byte[length];
+      buffer.get(data);
+      return new String(data, UTF_8);
+    }
+
+    String readName(HashMap<Integer, String> dictionary) {
+      int nameId = (int)readVarint() - 1;
+      return (nameId == -1)? readString(): dictionary.getOrDefault(nameId, "?");
+    }
+
+    Object[] readArgs(HashMap<Integer, String> dictionary) {
+      Object[] args = new Object[readByte()];
+      for(int i = 0; i < args.length; i++) {
+        byte kind = readByte();
+        switch(kind) {
+        case 'N':
+          args[i] = null;
+          break;
+        case 'I': {
+          long v = readVarint();
+          args[i] = (int)((v >>> 1) ^ -(v & 1));
+          break;
+        }
+        case 'J': {
+          long v = readVarint();
+          args[i] = (v >>> 1) ^ -(v & 1);
+          break;
+        }
+        case 'D': {
+          long v = 0;
+          for(int j = 0; j < 8; j++) {
+            v |= (buffer.get() & 0xFFL) << (j << 3);
+          }
+          args[i] = Double.longBitsToDouble(v);
+          break;
+        }
+        case 'S':
+          args[i] = dictionary.get((int)readVarint());
+          break;
+        case 's':
+          args[i] = readString();
+          break;
+        default:
+          throw new IllegalStateException("invalid argument kind " + kind);
+        }
+      }
+      return args;
+    }
+
+    void skipEvent(byte tag) {
+      readVarint();  // time
+      readByte();    // level
+      readName(new HashMap<>());
+      readOptionalString();
+      if (tag == EVENT) {
+        readVarint();  // provider
+        readArgs(new HashMap<>());
+        return;
+      }
+      if (tag == MESSAGE) {
+        readString();
+        return;
+      }
+      throw new IllegalStateException("invalid tag " + tag);
+    }
+  }
+}
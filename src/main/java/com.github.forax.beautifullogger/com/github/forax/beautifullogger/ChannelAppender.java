@@ -0,0 +1,192 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Objects;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerImpl.CharSequencePrintFactory;
+
+// Encode the events in the format of LogLines directly as UTF-8 into a per thread
+// direct byte buffer that is reused, the buffer is then written to the channel.
+// The level names and the config class name are encoded once, a message that only
+// contains ASCII characters is copied byte by byte, otherwise a per thread
+// CharsetEncoder is used, so apart from the stack trace of the context
+// printing an event allocates nothing.
+// The message of a message appender is encoded without creating a string.
+class ChannelAppender implements CharSequencePrintFactory {
+  private static final MethodHandle PRINT;
+  static {
+    try {
+      PRINT = lookup().findVirtual(ChannelAppender.class, "print",
+          methodType(void.class, byte[].class, CharSequence.class, Level.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final byte[][] LEVELS;
+  static {
+    Level[] levels = Level.values();
+    byte[][] names = new byte[levels.length][];
+    for(int i = 0; i < levels.length; i++) {
+      names[i] = (' ' + levels[i].name() + ' ').getBytes(US_ASCII);
+    }
+    LEVELS = names;
+  }
+
+  private static final int INITIAL_CAPACITY = 8_192;
+
+  private final WritableByteChannel channel;
+  private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+  ChannelAppender(WritableByteChannel channel) {
+    this.channel = Objects.requireNonNull(channel, "channel is null");
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return getCharSequencePrintMethodHandle(configClass)
+        .asType(methodType(void.class, String.class, Level.class, Throwable.class));
+  }
+
+  @Override
+  public MethodHandle getCharSequencePrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT.bindTo(this), 0, configClass.getName().getBytes(UTF_8));
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void print(byte[] name, CharSequence message, Level level, Throwable context) {
+    // the stack trace is computed first because printing it may call user code that logs
+    String stackTrace = null;
+    if (context != null) {
+      StringWriter writer = new StringWriter();
+      context.printStackTrace(new PrintWriter(writer));
+      stackTrace = writer.toString();
+    }
+
+    Encoder encoder = encoders.get();
+    encoder.reset();
+    encoder.putLong(System.currentTimeMillis());
+    encoder.put(LEVELS[level.ordinal()]);
+    encoder.put(name);
+    encoder.put(' ');
+    encoder.putString(message == null? "null": message);
+    encoder.put('\n');
+    if (stackTrace != null) {
+      encoder.putString(stackTrace);
+    }
+
+    ByteBuffer buffer = encoder.flip();
+    try {
+      synchronized(channel) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class Encoder {
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private final CharsetEncoder charsetEncoder = UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    void reset() {
+      buffer.clear();
+    }
+
+    ByteBuffer flip() {
+      return buffer.flip();
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (buffer.remaining() >= capacity) {
+        return;
+      }
+      ByteBuffer newBuffer = ByteBuffer.allocateDirect(Math.max(buffer.capacity() << 1, buffer.position() + capacity));
+      newBuffer.put(buffer.flip());
+      buffer = newBuffer;
+    }
+
+    void put(char c) {
+      ensureCapacity(1);
+      buffer.put((byte)c);
+    }
+
+    void put(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      buffer.put(bytes);
+    }
+
+    // value is positive
+    void putLong(long value) {
+      ensureCapacity(19);
+      int start = buffer.position();
+      do {
+        buffer.put((byte)('0' + value % 10));
+        value /= 10;
+      } while (value != 0);
+      // the digits are in reverse order
+      for(int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+        byte b = buffer.get(i);
+        buffer.put(i, buffer.get(j));
+        buffer.put(j, b);
+      }
+    }
+
+    void putString(CharSequence s) {
+      int length = s.length();
+      ensureCapacity(length);
+      int position = buffer.position();
+      int i = 0;
+      for(; i < length; i++) {  // ASCII fast path
+        char c = s.charAt(i);
+        if (c >= 0x80) {
+          break;
+        }
+        buffer.put(position + i, (byte)c);
+      }
+      buffer.position(position + i);
+      if (i != length) {
+        encode(s, i, length);
+      }
+    }
+
+    private void encode(CharSequence s, int start, int end) {
+      int length = end - start;
+      if (chars.capacity() < length) {
+        chars = CharBuffer.allocate(Math.max(length, chars.capacity() << 1));
+      }
+      chars.clear();
+      for(int i = start; i < end; i++) {
+        chars.put(s.charAt(i));
+      }
+      chars.flip();
+
+      // at most 3 bytes by char, so the encoder never overflows
+      ensureCapacity(3 * length);
+      charsetEncoder.reset();
+      charsetEncoder.encode(chars, buffer, true);
+      charsetEncoder.flush(buffer);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.arrayElementVarHandle;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
+import com.github.forax.beautifullogger.LoggerImpl.EventFilterPrintFactory;
+
+// Print the first occurrence of an event, then count the same events until the end of the window
+// and print one summary with the count.
+// Two events are the same if they have the same config class, the same level, the same class of message provider
+// (or the same message if the message is a String) and the same class of exception,
+// so the message provider is not called for a repeated event.
+// The windows are stored in a fixed size open table without probing, an event that collides
+// with the running window of another event is printed. A slot is only changed by a CAS,
+// an expired window is replaced by the first event that needs the slot or removed by the reporter,
+// the one that does the CAS prints the summary.
+class DeduplicatingPrintFactory implements EventFilterPrintFactory {
+  private static final MethodHandle ACCEPT;
+  private static final VarHandle SLOTS = arrayElementVarHandle(Window[].class);
+  static {
+    try {
+      ACCEPT = lookup().findVirtual(DeduplicatingPrintFactory.class, "accept",
+          methodType(boolean.class, Class.class, MethodHandle.class, Level.class, Throwable.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final int TABLE_SIZE = 1 << 10;  // a power of 2
+  private static final long REPORT_PERIOD_MILLIS = 1_000;
+
+  // the reporter prints the summaries of the windows that expire without a new event,
+  // it does not keep the print factories alive
+  private static class Reporter {
+    static final ConcurrentLinkedQueue<WeakReference<DeduplicatingPrintFactory>> FACTORIES = new ConcurrentLinkedQueue<>();
+    static {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "beautiful-logger-deduplicate");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.scheduleAtFixedRate(Reporter::report, REPORT_PERIOD_MILLIS, REPORT_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void report() {
+      FACTORIES.removeIf(reference -> {
+        DeduplicatingPrintFactory factory = reference.get();
+        if (factory == null) {
+          return true;
+        }
+        factory.removeExpiredWindows(System.nanoTime());
+        return false;
+      });
+    }
+  }
+
+  private static final class Window {
+    private final Class<?> configClass;
+    private final Level level;
+    private final Object key;  // the class of the message provider or the message
+    private final Class<?> exceptionClass;  // nullable
+    private final long start;
+    private final MethodHandle print;
+    private final LongAdder repeated = new LongAdder();
+
+    Window(Class<?> configClass, Level level, Object key, Class<?> exceptionClass, long start, MethodHandle print) {
+      this.configClass = configClass;
+      this.level = level;
+      this.key = key;
+      this.exceptionClass = exceptionClass;
+      this.start = start;
+      this.print = print;
+    }
+
+    boolean matches(Class<?> configClass, Level level, Object key, Class<?> exceptionClass) {
+      return this.configClass == configClass && this.level == level && this.exceptionClass == exceptionClass &&
+          (this.key == key || (key instanceof String && key.equals(this.key)));
+    }
+
+    void printSummary() {
+      long count = repeated.sum();
+      if (count == 0) {
+        return;
+      }
+      String description = (key instanceof Class<?>)? "message provider " + ((Class<?>)key).getName(): "message " + key;
+      String message = "repeated " + count + " times: " + level + " " + description +
+          ((exceptionClass == null)? "": " with " + exceptionClass.getName());
+      try {
+        print.invokeExact(message, level, (Throwable)null);
+      } catch (Throwable t) {
+        // the logging thread or the reporter thread must survive to a failing printer
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+      }
+    }
+  }
+
+  private final PrintFactory delegate;
+  private final long windowNanos;
+  private final Window[] slots = new Window[TABLE_SIZE];
+
+  DeduplicatingPrintFactory(PrintFactory delegate, long windowNanos) {
+    this.delegate = delegate;
+    this.windowNanos = windowNanos;
+    Reporter.FACTORIES.add(new WeakReference<>(this));
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return delegate.getPrintMethodHandle(configClass);
+  }
+
+  @Override
+  public MethodHandle getEventFilterMethodHandle(Class<?> configClass) {
+    MethodHandle print = delegate.getPrintMethodHandle(configClass).asType(AsyncPrintFactoryImpl.PRINT_TYPE);
+    return insertArguments(ACCEPT.bindTo(this), 0, configClass, print);
+  }
+
+  private static int hash(Class<?> configClass, Level level, Object key, Class<?> exceptionClass) {
+    int hash = key.hashCode() * 31 + System.identityHashCode(exceptionClass);
+    hash = hash * 31 + System.identityHashCode(configClass);
+    hash = hash * 31 + level.ordinal();
+    return hash ^ (hash >>> 16);
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private boolean accept(Class<?> configClass, MethodHandle print, Level level, Throwable context, Object messageProvider) {
+    Object key = (messageProvider instanceof String)? messageProvider: messageProvider.getClass();
+    Class<?> exceptionClass = (context == null)? null: context.getClass();
+    int index = hash(configClass, level, key, exceptionClass) & (TABLE_SIZE - 1);
+    long now = System.nanoTime();
+    for(;;) {
+      Window window = (Window)SLOTS.getVolatile(slots, index);
+      if (window != null && now - window.start < windowNanos) {
+        if (window.matches(configClass, level, key, exceptionClass)) {
+          window.repeated.increment();
+          return false;
+        }
+        return true;  // the slot is used by another event
+      }
+      if (SLOTS.compareAndSet(slots, index, window, new Window(configClass, level, key, exceptionClass, now, print))) {
+        if (window != null) {
+          window.printSummary();
+        }
+        return true;
+      }
+    }
+  }
+
+  private void removeExpiredWindows(long now) {
+    for(int i = 0; i < slots.length; i++) {
+      Window window = (Window)SLOTS.getVolatile(slots, i);
+      if (window != null && now - window.start >= windowNanos && SLOTS.compareAndSet(slots, i, window, null)) {
+        window.printSummary();
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Collections.nCopies;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.github.forax.beautifullogger.Logger.Level;
+
+// The ring of a flight recorder, each thread records the events below the level of the configuration
+// in its own preallocated ring, so recording an event is a thread local lookup and some field writes.
+// The message provider and its arguments are recorded, the message is created only if the ring is dumped,
+// i.e. when the same thread logs an ERROR, so the arguments are kept alive until they are overwritten
+// or dumped. With a max age, each event is timestamped and the expired events are released
+// each time the thread records or dumps an event.
+class EventRing {
+  private static final int MAX_PARAMETERS = 4;
+  private static final MethodHandle RECORD, DUMP, DOUBLE_TO_RAW_LONG_BITS;
+  static {
+    MethodHandles.Lookup lookup = lookup();
+    try {
+      RECORD = lookup.findVirtual(EventRing.class, "record",
+          methodType(void.class, Level.class, Throwable.class, Object.class,
+              Object.class, Object.class, Object.class, Object.class, long.class, Class.class));
+      DUMP = lookup.findVirtual(EventRing.class, "dump", methodType(void.class, MethodHandle.class, Level.class));
+      DOUBLE_TO_RAW_LONG_BITS = lookup.findStatic(Double.class, "doubleToRawLongBits", methodType(long.class, double.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final class Event {
+    private Level level;
+    private Throwable context;
+    private Object messageProvider;
+    private final Object[] args = new Object[MAX_PARAMETERS];
+    private long bits;  // the primitive argument
+    private Class<?> primitive;  // nullable
+    private long nanos;  // only if the ring has a max age
+
+    String message() throws Throwable {
+      Entry<Class<?>, MethodHandle> pair = LoggerImpl.findFunctionalInterfaceMH(messageProvider);
+      MethodHandle provider = pair.getValue();
+      Object[] arguments = new Object[provider.type().parameterCount()];
+      arguments[0] = messageProvider;
+      int objectCount = arguments.length - ((primitive == null)? 1: 2);
+      System.arraycopy(args, 0, arguments, 1, objectCount);
+      if (primitive != null) {
+        arguments[arguments.length - 1] = (primitive == int.class)? (Object)(int)bits:
+          (primitive == long.class)? (Object)bits: (Object)Double.longBitsToDouble(bits);
+      }
+      return (String)provider.invokeWithArguments(arguments);
+    }
+
+    void clear() {
+      context = null;
+      messageProvider = null;
+      Arrays.fill(args, null);
+    }
+  }
+
+  private static final class Ring {
+    private final Event[] events;
+    private int next;
+    private int size;
+    private boolean dumping;
+
+    Ring(int capacity) {
+      Event[] events = new Event[capacity];
+      for(int i = 0; i < events.length; i++) {
+        events[i] = new Event();
+      }
+      this.events = events;
+    }
+  }
+
+  private final ThreadLocal<Ring> rings;
+  private final long maxAgeNanos;  // or Long.MAX_VALUE
+
+  EventRing(int capacity, long maxAgeNanos) {
+    this.rings = ThreadLocal.withInitial(() -> new Ring(capacity));
+    this.maxAgeNanos = maxAgeNanos;
+  }
+
+  // returns a method handle with the type of the call site that records the event
+  MethodHandle recordMethodHandle(MethodType type) {
+    MethodHandle mh = RECORD.bindTo(this);
+    List<Class<?>> parameterTypes = type.parameterList();
+    Class<?> last = parameterTypes.get(parameterTypes.size() - 1);
+    int objectCount = parameterTypes.size() - 3;
+    if (last.isPrimitive()) {
+      objectCount--;
+      mh = insertArguments(mh, 8, last);
+      if (last == double.class) {
+        mh = filterArguments(mh, 7, DOUBLE_TO_RAW_LONG_BITS);
+      }
+    } else {
+      mh = insertArguments(mh, 7, 0L, null);
+    }
+    mh = insertArguments(mh, 3 + objectCount, nCopies(MAX_PARAMETERS - objectCount, LoggerImpl.NONE).toArray());
+    return mh.asType(type);
+  }
+
+  // returns a method handle with the type of the call site that prints the events recorded
+  // by the current thread if the level is ERROR
+  MethodHandle dumpMethodHandle(MethodHandle print, MethodType type) {
+    MethodHandle mh = insertArguments(DUMP.bindTo(this), 0, print.asType(AsyncPrintFactoryImpl.PRINT_TYPE));
+    return dropArguments(mh, 1, type.parameterList().subList(1, type.parameterCount()));
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void record(Level level, Throwable context, Object messageProvider,
+                      Object arg0, Object arg1, Object arg2, Object arg3, long bits, Class<?> primitive) {
+    Ring ring = rings.get();
+    if (ring.dumping) {  // a message provider or the printer logs
+      return;
+    }
+    Event event = ring.events[ring.next];
+    event.level = level;
+    event.context = context;
+    event.messageProvider = messageProvider;
+    event.args[0] = arg0;
+    event.args[1] = arg1;
+    event.args[2] = arg2;
+    event.args[3] = arg3;
+    event.bits = bits;
+    event.primitive = primitive;
+    if (++ring.next == ring.events.length) {
+      ring.next = 0;
+    }
+    if (ring.size < ring.events.length) {
+      ring.size++;
+    }
+    if (maxAgeNanos != Long.MAX_VALUE) {
+      long now = System.nanoTime();
+      event.nanos = now;
+      releaseExpiredEvents(ring, now);
+    }
+  }
+
+  // clear the oldest events while they are expired
+  private void releaseExpiredEvents(Ring ring, long now) {
+    Event[] events = ring.events;
+    while (ring.size != 0) {
+      int oldest = ring.next - ring.size;
+      if (oldest < 0) {
+        oldest += events.length;
+      }
+      Event event = events[oldest];
+      if (now - event.nanos < maxAgeNanos) {
+        return;
+      }
+      event.clear();
+      ring.size--;
+    }
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void dump(MethodHandle print, Level level) throws Throwable {
+    if (level != Level.ERROR) {
+      return;
+    }
+    Ring ring = rings.get();
+    if (maxAgeNanos != Long.MAX_VALUE && !ring.dumping) {
+      releaseExpiredEvents(ring, System.nanoTime());
+    }
+    if (ring.size == 0 || ring.dumping) {
+      return;
+    }
+    Event[] events = ring.events;
+    int start = ring.next - ring.size;
+    if (start < 0) {
+      start += events.length;
+    }
+    ring.dumping = true;
+    try {
+      for(int i = 0; i < ring.size; i++) {
+        Event event = events[(start + i) % events.length];
+        print.invokeExact(event.message(), event.level, event.context);
+      }
+    } finally {
+      for(Event event: events) {
+        event.clear();
+      }
+      ring.size = 0;
+      ring.dumping = false;
+    }
+  }
+}
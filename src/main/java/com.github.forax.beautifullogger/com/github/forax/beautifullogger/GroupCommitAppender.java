@@ -0,0 +1,264 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.CommitPolicy;
+import com.github.forax.beautifullogger.LoggerConfig.GroupCommitPrintFactory;
+
+// Collect the events of all threads in a batch, a flusher thread writes
+// each batch with one gathering write followed by one force().
+// Events with a level greater or equals to the sync level of the policy
+// trigger a flush and wait until they are durable.
+// close() writes the pending events and stops the flusher, a shutdown hook does the same
+// when the VM exits, so a partial batch is not lost.
+class GroupCommitAppender implements GroupCommitPrintFactory {
+  private static final MethodHandle PRINT;
+  static {
+    try {
+      PRINT = lookup().findVirtual(GroupCommitAppender.class, "print",
+          methodType(void.class, String.class, String.class, Level.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+  private final FileChannel channel;
+  private final int maxEvents;
+  private final long maxDelayNanos;
+  private final Level syncLevel;  // nullable
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition pendingCondition = lock.newCondition();
+  private final Condition committedCondition = lock.newCondition();
+  private final Thread flusher;
+  private final Thread shutdownHook;
+
+  // guarded by lock
+  private final ArrayList<ByteBuffer> pending = new ArrayList<>();
+  private long firstPendingNanos;
+  private boolean urgent;
+  private long appended;
+  private long committed;
+  private IOException failure;  // nullable
+  private boolean closed;
+
+  GroupCommitAppender(Path path, CommitPolicy policy) throws IOException {
+    Objects.requireNonNull(path, "path is null");
+    Objects.requireNonNull(policy, "policy is null");
+    this.maxEvents = policy.maxEvents;
+    this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(policy.maxDelayMicros);
+    this.syncLevel = policy.syncLevel;
+    this.channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+
+    Thread flusher = new Thread(this::flushLoop, "beautiful-logger-group-commit");
+    flusher.setDaemon(true);
+    this.flusher = flusher;
+    flusher.start();
+
+    // the flusher is a daemon thread, the pending events are written before the VM exits,
+    // unless the disk is stuck
+    Thread shutdownHook = new Thread(() -> close(SHUTDOWN_TIMEOUT_MILLIS), "beautiful-logger-group-commit-shutdown");
+    this.shutdownHook = shutdownHook;
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT.bindTo(this), 0, configClass.getName());
+  }
+
+  @Override
+  public void flush() {
+    lock.lock();
+    try {
+      long ticket = appended;
+      if (committed < ticket) {
+        urgent = true;
+        pendingCondition.signal();
+      }
+      while (committed < ticket) {
+        checkFailure();
+        committedCondition.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    close(0);  // no timeout
+  }
+
+  private void close(long timeoutMillis) {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      pendingCondition.signal();
+    } finally {
+      lock.unlock();
+    }
+    boolean interrupted = false;
+    for(;;) {
+      try {
+        flusher.join(timeoutMillis);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // the VM is shutting down, close() is called by the hook
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void print(String name, String message, Level level, Throwable context) {
+    ByteBuffer buffer = ByteBuffer.wrap(LogLines.format(System.currentTimeMillis(), name, message, level, context).getBytes(UTF_8));
+    boolean sync = syncLevel != null && level.compareTo(syncLevel) >= 0;
+    lock.lock();
+    try {
+      checkFailure();
+      if (closed) {
+        throw new IllegalStateException("group commit closed");
+      }
+      if (pending.isEmpty()) {
+        firstPendingNanos = System.nanoTime();
+      }
+      pending.add(buffer);
+      long ticket = ++appended;
+      if (sync) {
+        urgent = true;
+      }
+      if (sync || pending.size() == 1 || pending.size() >= maxEvents) {
+        pendingCondition.signal();
+      }
+      if (sync) {
+        while (committed < ticket) {
+          committedCondition.awaitUninterruptibly();
+          checkFailure();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw new UncheckedIOException(failure);
+    }
+  }
+
+  private void flushLoop() {
+    for(;;) {
+      ByteBuffer[] batch;
+      long ticket;
+      lock.lock();
+      try {
+        if (!awaitBatch()) {
+          return;  // closed
+        }
+        batch = pending.toArray(new ByteBuffer[0]);
+        pending.clear();
+        urgent = false;
+        ticket = appended;
+      } finally {
+        lock.unlock();
+      }
+
+      IOException failure = null;
+      try {
+        write(batch);
+        channel.force(false);
+      } catch (IOException e) {
+        failure = e;
+      }
+
+      lock.lock();
+      try {
+        if (failure != null) {
+          this.failure = failure;
+        } else {
+          committed = ticket;
+        }
+        committedCondition.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      if (failure != null) {
+        return;
+      }
+    }
+  }
+
+  // called with the lock held, returns false if the appender is closed and there is no pending event
+  private boolean awaitBatch() {
+    for(;;) {
+      if (pending.isEmpty()) {
+        if (closed) {
+          return false;
+        }
+        pendingCondition.awaitUninterruptibly();
+        continue;
+      }
+      if (urgent || closed || pending.size() >= maxEvents) {
+        return true;
+      }
+      long remaining = maxDelayNanos - (System.nanoTime() - firstPendingNanos);
+      if (remaining <= 0) {
+        return true;
+      }
+      try {
+        pendingCondition.awaitNanos(remaining);
+      } catch (InterruptedException e) {
+        // the flusher thread is private, so nobody should interrupt it, retry
+      }
+    }
+  }
+
+  private void write(ByteBuffer[] batch) throws IOException {
+    int index = 0;
+    while (index < batch.length) {
+      channel.write(batch, index, batch.length - index);
+      while (index < batch.length && !batch[index].hasRemaining()) {
+        index++;
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.github.forax.beautifullogger;
+
+import com.github.forax.beautifullogger.Logger.Level;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// The JFR events of the library, they can be correlated with the GC and the safepoints
+// in the same recording.
+// A JFR event is only created if a recording is running, see JfrPrintFactory, CS.fallback and
+// LoggerConfigImpl.commit
+// jdk.jfr is an optional dependency, this class can be loaded without it, the classes that
+// use the jdk.jfr API are only loaded if AVAILABLE is true
+class JfrEvents {
+  private JfrEvents() {
+    throw new AssertionError();
+  }
+
+  static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+  static final String CATEGORY = "Beautiful Logger";
+
+  // cached, so checking if a recording is running does not allocate an event
+  private static class EventTypes {
+    static final EventType RELINK = EventType.getEventType(RelinkEvent.class);
+    static final EventType INVALIDATION = EventType.getEventType(InvalidationEvent.class);
+  }
+
+  // returns a started relink event or null if no recording is running
+  static Object beginRelink() {
+    if (!AVAILABLE || !EventTypes.RELINK.isEnabled()) {
+      return null;
+    }
+    RelinkEvent event = new RelinkEvent();
+    event.begin();
+    return event;
+  }
+
+  static void commitRelink(Object relinkEvent, Class<?> configClass, Level level, boolean enabled) {
+    if (relinkEvent == null) {
+      return;
+    }
+    RelinkEvent event = (RelinkEvent)relinkEvent;
+    if (event.shouldCommit()) {
+      event.configClass = configClass;
+      event.level = level.name();
+      event.enabled = enabled;
+      event.commit();
+    }
+  }
+
+  // returns a started invalidation event or null if no recording is running
+  static Object beginInvalidation() {
+    if (!AVAILABLE || !EventTypes.INVALIDATION.isEnabled()) {
+      return null;
+    }
+    InvalidationEvent event = new InvalidationEvent();
+    event.begin();
+    return event;
+  }
+
+  static void commitInvalidation(Object invalidationEvent, int configurations) {
+    if (invalidationEvent == null) {
+      return;
+    }
+    InvalidationEvent event = (InvalidationEvent)invalidationEvent;
+    if (event.shouldCommit()) {
+      event.configurations = configurations;
+      event.commit();
+    }
+  }
+
+  @Name("com.github.forax.beautifullogger.Log")
+  @Label("Log")
+  @Category(CATEGORY)
+  @Description("An event printed by a logger configured with PrintFactory.jfr()")
+  static class LogEvent extends Event {
+    @Label("Level")
+    String level;
+
+    @Label("Config Class")
+    Class<?> configClass;
+
+    @Label("Message")
+    String message;
+
+    @Label("Exception")
+    String exception;
+  }
+
+  @Name("com.github.forax.beautifullogger.Relink")
+  @Label("Logger Relink")
+  @Category(CATEGORY)
+  @Description("A logger call site computes its method handle tree from the configuration")
+  static class RelinkEvent extends Event {
+    @Label("Config Class")
+    Class<?> configClass;
+
+    @Label("Level")
+    String level;
+
+    @Label("Enabled")
+    boolean enabled;
+  }
+
+  @Name("com.github.forax.beautifullogger.Invalidation")
+  @Label("Logger Config Invalidation")
+  @Category(CATEGORY)
+  @Description("Configurations are updated, the loggers that depend on them are invalidated")
+  static class InvalidationEvent extends Event {
+    @Label("Configurations")
+    int configurations;
+  }
+}
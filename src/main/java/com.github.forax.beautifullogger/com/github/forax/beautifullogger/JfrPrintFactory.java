@@ -0,0 +1,59 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import com.github.forax.beautifullogger.JfrEvents.LogEvent;
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerImpl.FilteredPrintFactory;
+
+import jdk.jfr.EventType;
+
+// Commit each event as a JFR event, the call site checks that the event type is enabled,
+// i.e. that a recording is running, before calling the message provider.
+class JfrPrintFactory implements FilteredPrintFactory {
+  private static final MethodHandle PRINT, IS_ENABLED;
+  static {
+    MethodHandles.Lookup lookup = lookup();
+    try {
+      PRINT = lookup.findStatic(JfrPrintFactory.class, "print",
+          methodType(void.class, Class.class, String.class, Level.class, Throwable.class));
+      IS_ENABLED = lookup.findVirtual(EventType.class, "isEnabled", methodType(boolean.class))
+          .bindTo(EventType.getEventType(LogEvent.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static final JfrPrintFactory INSTANCE = new JfrPrintFactory();
+
+  private JfrPrintFactory() {
+    // singleton
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT, 0, configClass);
+  }
+
+  @Override
+  public MethodHandle getIsEnabledMethodHandle(Class<?> configClass) {
+    return IS_ENABLED;
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private static void print(Class<?> configClass, String message, Level level, Throwable context) {
+    LogEvent event = new LogEvent();
+    event.level = level.name();
+    event.configClass = configClass;
+    event.message = message;
+    if (context != null) {
+      event.exception = context.toString();
+    }
+    event.commit();
+  }
+}
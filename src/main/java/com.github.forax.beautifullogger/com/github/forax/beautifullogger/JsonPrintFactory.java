@@ -0,0 +1,208 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Objects;
+
+import com.github.forax.beautifullogger.Logger.FieldWriter;
+import com.github.forax.beautifullogger.Logger.Fields;
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerImpl.StructuredPrintFactory;
+
+// Print each event as one line of JSON:
+//   {"time":millis,"level":"INFO","logger":"configClassName","message":"text"}
+//   {"time":millis,"level":"INFO","logger":"configClassName","event":"name","key":value,...}
+// The fields are encoded directly into a per thread buffer that is reused,
+// so printing an event allocates nothing apart from the stack trace of the context.
+class JsonPrintFactory implements StructuredPrintFactory {
+  private static final MethodHandle PRINT, PRINT_EVENT;
+  static {
+    MethodHandles.Lookup lookup = lookup();
+    try {
+      PRINT = lookup.findVirtual(JsonPrintFactory.class, "print",
+          methodType(void.class, String.class, String.class, Level.class, Throwable.class));
+      PRINT_EVENT = lookup.findVirtual(JsonPrintFactory.class, "printEvent",
+          methodType(void.class, String.class, String.class, Fields.class, Level.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final Writer writer;
+  private final ThreadLocal<JsonEncoder> encoders = ThreadLocal.withInitial(JsonEncoder::new);
+
+  JsonPrintFactory(Writer writer) {
+    this.writer = Objects.requireNonNull(writer, "writer is null");
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT.bindTo(this), 0, loggerField(configClass));
+  }
+
+  @Override
+  public MethodHandle getStructuredPrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT_EVENT.bindTo(this), 0, loggerField(configClass));
+  }
+
+  // the logger field is escaped once
+  private static String loggerField(Class<?> configClass) {
+    JsonEncoder encoder = new JsonEncoder();
+    encoder.builder.append(",\"logger\":");
+    encoder.string(configClass.getName());
+    return encoder.builder.toString();
+  }
+
+  private JsonEncoder encoder() {
+    JsonEncoder encoder = encoders.get();
+    // a message provider or the fields may log, in that case the encoder is in use
+    return encoder.inUse? new JsonEncoder(): encoder;
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void print(String loggerField, String message, Level level, Throwable context) {
+    JsonEncoder encoder = encoder();
+    encoder.begin(loggerField, level).field("message", message);
+    encoder.end(context, writer);
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void printEvent(String loggerField, String event, Fields fields, Level level, Throwable context) {
+    JsonEncoder encoder = encoder();
+    encoder.begin(loggerField, level).field("event", event);
+    try {
+      fields.writeTo(encoder);
+    } catch (RuntimeException | Error e) {
+      encoder.inUse = false;
+      throw e;
+    }
+    encoder.end(context, writer);
+  }
+
+  static class JsonEncoder implements FieldWriter {
+    private final StringBuilder builder = new StringBuilder(256);
+    private char[] chars = new char[256];
+    boolean inUse;
+
+    JsonEncoder begin(String loggerField, Level level) {
+      inUse = true;
+      builder.setLength(0);
+      builder.append("{\"time\":").append(System.currentTimeMillis())
+          .append(",\"level\":\"").append(level.name()).append('"')
+          .append(loggerField);
+      return this;
+    }
+
+    void end(Throwable context, Writer writer) {
+      try {
+        if (context != null) {
+          StringWriter stackTrace = new StringWriter();
+          context.printStackTrace(new PrintWriter(stackTrace));
+          key("exception");
+          string(stackTrace.toString());
+        }
+        builder.append("}\n");
+
+        int length = builder.length();
+        if (chars.length < length) {
+          chars = new char[Math.max(length, chars.length << 1)];
+        }
+        builder.getChars(0, length, chars, 0);
+        synchronized(writer) {
+          writer.write(chars, 0, length);
+          writer.flush();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        inUse = false;
+      }
+    }
+
+    private void key(String key) {
+      builder.append(',');
+      string(key);
+      builder.append(':');
+    }
+
+    private void string(String value) {
+      if (value == null) {
+        builder.append("null");
+        return;
+      }
+      builder.append('"');
+      int length = value.length();
+      int start = 0;
+      while (start < length && !needEscape(value.charAt(start))) {
+        start++;
+      }
+      // fast path, copy the characters that do not need to be escaped at once
+      builder.append(value, 0, start);
+      for(int i = start; i < length; i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          builder.append('\\').append(c);
+          continue;
+        }
+        if (c < 0x20) {
+          if (c == '\n') {
+            builder.append("\\n");
+          } else if (c == '\r') {
+            builder.append("\\r");
+          } else if (c == '\t') {
+            builder.append("\\t");
+          } else {
+            builder.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+          }
+          continue;
+        }
+        builder.append(c);
+      }
+      builder.append('"');
+    }
+
+    private static boolean needEscape(char c) {
+      return c < 0x20 || c == '"' || c == '\\';
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public FieldWriter field(String key, long value) {
+      key(key);
+      builder.append(value);
+      return this;
+    }
+    @Override
+    public FieldWriter field(String key, double value) {
+      key(key);
+      if (Double.isNaN(value) || Double.isInfinite(value)) {  // not valid JSON numbers
+        builder.append('"').append(value).append('"');
+      } else {
+        builder.append(value);
+      }
+      return this;
+    }
+    @Override
+    public FieldWriter field(String key, boolean value) {
+      key(key);
+      builder.append(value);
+      return this;
+    }
+    @Override
+    public FieldWriter field(String key, String value) {
+      key(key);
+      string(value);
+      return this;
+    }
+  }
+}
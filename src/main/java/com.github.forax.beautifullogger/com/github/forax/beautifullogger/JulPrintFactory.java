@@ -0,0 +1,122 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.StackWalker.Option;
+import java.lang.StackWalker.StackFrame;
+import java.lang.invoke.MethodHandle;
+import java.util.Optional;
+import java.util.logging.LogRecord;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
+
+// Print the events of systemLogger() directly with java.util.logging when it is the backend of the System.Loggers.
+// java.util.logging infers the source of a record from the stack, here the source is inferred lazily
+// by a StackWalker that skips the frames of LoggerStub, so a handler sees the caller of the log method
+// and LoggerStub stays a plain class that can be archived by CDS.
+// This class is only loaded if java.util.logging is the backend, see PrintFactory.systemLogger().
+class JulPrintFactory implements PrintFactory {
+  private static final MethodHandle PRINT;
+  static {
+    try {
+      PRINT = lookup().findStatic(JulPrintFactory.class, "print",
+          methodType(void.class, java.util.logging.Logger.class, String.class, Level.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final StackWalker WALKER = StackWalker.getInstance(Option.RETAIN_CLASS_REFERENCE);
+
+  static final JulPrintFactory INSTANCE = new JulPrintFactory();
+
+  private JulPrintFactory() {
+    // singleton
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return PRINT.bindTo(java.util.logging.Logger.getLogger(configClass.getName()));
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private static void print(java.util.logging.Logger logger, String message, Level level, Throwable context) {
+    java.util.logging.Level julLevel = level(level);
+    if (!logger.isLoggable(julLevel)) {
+      return;
+    }
+    CallerLogRecord record = new CallerLogRecord(julLevel, message);
+    record.setThrown(context);
+    record.setLoggerName(logger.getName());
+    logger.log(record);
+  }
+
+  // same mapping as the System.Loggers of java.util.logging
+  private static java.util.logging.Level level(Level level) {
+    // do not use a switch here, we want this code to be inlined !
+    if (level == Level.ERROR) {
+      return java.util.logging.Level.SEVERE;
+    }
+    if (level == Level.WARNING) {
+      return java.util.logging.Level.WARNING;
+    }
+    if (level == Level.INFO) {
+      return java.util.logging.Level.INFO;
+    }
+    if (level == Level.DEBUG) {
+      return java.util.logging.Level.FINE;
+    }
+    return java.util.logging.Level.FINER;
+  }
+
+  // the source is the frame that calls LoggerStub, if the record is published by the logging thread,
+  // otherwise (the consumer thread of async() for example) there is no source
+  private static final class CallerLogRecord extends LogRecord {
+    private static final long serialVersionUID = 1;
+
+    private transient boolean needToInferCaller = true;
+
+    CallerLogRecord(java.util.logging.Level level, String message) {
+      super(level, message);
+    }
+
+    @Override
+    public String getSourceClassName() {
+      inferCaller();
+      return super.getSourceClassName();
+    }
+
+    @Override
+    public void setSourceClassName(String sourceClassName) {
+      needToInferCaller = false;
+      super.setSourceClassName(sourceClassName);
+    }
+
+    @Override
+    public String getSourceMethodName() {
+      inferCaller();
+      return super.getSourceMethodName();
+    }
+
+    @Override
+    public void setSourceMethodName(String sourceMethodName) {
+      needToInferCaller = false;
+      super.setSourceMethodName(sourceMethodName);
+    }
+
+    private void inferCaller() {
+      if (!needToInferCaller) {
+        return;
+      }
+      needToInferCaller = false;
+      Optional<StackFrame> caller = WALKER.walk(frames -> frames
+          .dropWhile(frame -> frame.getDeclaringClass() != LoggerStub.class)
+          .dropWhile(frame -> frame.getDeclaringClass() == LoggerStub.class)
+          .findFirst());
+      super.setSourceClassName(caller.map(StackFrame::getClassName).orElse(null));
+      super.setSourceMethodName(caller.map(StackFrame::getMethodName).orElse(null));
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.github.forax.beautifullogger;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import com.github.forax.beautifullogger.Logger.Level;
+
+// textual format used by the file based print factories:
+//   timeMillis LEVEL configClassName message
+// followed by the stack trace of the context if there is one
+class LogLines {
+  private LogLines() {
+    throw new AssertionError();
+  }
+
+  static String format(long timeMillis, String name, String message, Level level, Throwable context) {
+    String stackTrace = null;
+    if (context != null) {
+      StringWriter writer = new StringWriter();
+      context.printStackTrace(new PrintWriter(writer));
+      stackTrace = writer.toString();
+    }
+    return format(timeMillis, name, message, level, stackTrace);
+  }
+
+  static String format(long timeMillis, String name, String message, Level level, String stackTrace) {
+    StringBuilder builder = new StringBuilder(128)
+        .append(timeMillis).append(' ')
+        .append(level.name()).append(' ')
+        .append(name).append(' ')
+        .append(message).append('\n');
+    if (stackTrace != null) {
+      builder.append(stackTrace);
+    }
+    return builder.toString();
+  }
+}
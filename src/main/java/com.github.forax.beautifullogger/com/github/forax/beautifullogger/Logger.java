@@ -1,7 +1,6 @@
 package com.github.forax.beautifullogger;
 
 import java.lang.StackWalker.Option;
-import java.lang.invoke.MethodHandle;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.DoubleFunction;
@@ -19,6 +18,50 @@ public interface Logger {
     static final Level[] LEVELS = values();
   }
   
+  // the fields of a structured event, they are written directly to the print factory
+  @FunctionalInterface
+  public interface Fields {
+    void writeTo(FieldWriter writer);
+  }
+  
+  public interface FieldWriter {
+    FieldWriter field(String key, long value);
+    FieldWriter field(String key, double value);
+    FieldWriter field(String key, boolean value);
+    FieldWriter field(String key, String value);
+  }
+  
+  // message providers with more arguments than BiFunction, the ones mixing an object and
+  // a primitive value avoid boxing, they are used by the methods errorInt, errorLong, etc
+  // because an overload of error with the same arity would make the implicitly typed lambdas ambiguous
+  @FunctionalInterface
+  public interface TriFunction<T, U, V, R> {
+    R apply(T arg0, U arg1, V arg2);
+  }
+  @FunctionalInterface
+  public interface QuadFunction<T, U, V, W, R> {
+    R apply(T arg0, U arg1, V arg2, W arg3);
+  }
+  @FunctionalInterface
+  public interface ObjIntFunction<T, R> {
+    R apply(T arg0, int arg1);
+  }
+  @FunctionalInterface
+  public interface ObjLongFunction<T, R> {
+    R apply(T arg0, long arg1);
+  }
+  @FunctionalInterface
+  public interface ObjDoubleFunction<T, R> {
+    R apply(T arg0, double arg1);
+  }
+  
+  // a message provider that appends the message to a builder owned by the logger,
+  // a print factory that accepts a CharSequence receives the builder, so no string is created
+  @FunctionalInterface
+  public interface MessageAppender<T> {
+    void appendTo(StringBuilder builder, T arg);
+  }
+  
   void error(String message, Throwable context);
   void error(Supplier<String> messageProvider);
   <T> void error(Function<? super T, String> messageProvider, T arg0);
@@ -26,6 +69,12 @@ public interface Logger {
   void error(LongFunction<String> messageProvider, long arg0);
   void error(DoubleFunction<String> messageProvider, double arg0);
   <T, U> void error(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1);
+  <T, U, V> void error(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2);
+  <T, U, V, W> void error(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3);
+  <T> void errorInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1);
+  <T> void errorLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1);
+  <T> void errorDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1);
+  <T> void error(MessageAppender<? super T> messageProvider, T arg0);
   
   void warning(String message, Throwable context);
   void warning(Supplier<String> messageProvider);
@@ -34,6 +83,12 @@ public interface Logger {
   void warning(LongFunction<String> messageProvider, long arg0);
   void warning(DoubleFunction<String> messageProvider, double arg0);
   <T, U> void warning(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1);
+  <T, U, V> void warning(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2);
+  <T, U, V, W> void warning(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3);
+  <T> void warningInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1);
+  <T> void warningLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1);
+  <T> void warningDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1);
+  <T> void warning(MessageAppender<? super T> messageProvider, T arg0);
   
   void info(String message, Throwable context);
   void info(Supplier<String> messageProvider);
@@ -42,6 +97,12 @@ public interface Logger {
   void info(LongFunction<String> messageProvider, long arg0);
   void info(DoubleFunction<String> messageProvider, double arg0);
   <T, U> void info(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1);
+  <T, U, V> void info(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2);
+  <T, U, V, W> void info(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3);
+  <T> void infoInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1);
+  <T> void infoLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1);
+  <T> void infoDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1);
+  <T> void info(MessageAppender<? super T> messageProvider, T arg0);
   
   void debug(String message, Throwable context);
   void debug(Supplier<String> messageProvider);
@@ -50,6 +111,12 @@ public interface Logger {
   void debug(LongFunction<String> messageProvider, long arg0);
   void debug(DoubleFunction<String> messageProvider, double arg0);
   <T, U> void debug(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1);
+  <T, U, V> void debug(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2);
+  <T, U, V, W> void debug(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3);
+  <T> void debugInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1);
+  <T> void debugLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1);
+  <T> void debugDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1);
+  <T> void debug(MessageAppender<? super T> messageProvider, T arg0);
   
   void trace(String message, Throwable context);
   void trace(Supplier<String> messageProvider);
@@ -58,6 +125,16 @@ public interface Logger {
   void trace(LongFunction<String> messageProvider, long arg0);
   void trace(DoubleFunction<String> messageProvider, double arg0);
   <T, U> void trace(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1);
+  <T, U, V> void trace(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2);
+  <T, U, V, W> void trace(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3);
+  <T> void traceInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1);
+  <T> void traceLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1);
+  <T> void traceDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1);
+  <T> void trace(MessageAppender<? super T> messageProvider, T arg0);
+  
+  // log a structured event, a print factory that does not support structured events
+  // receives the event and the fields as a text message
+  void event(Level level, String event, Fields fields);
   
   public static Logger getLogger() {
     Class<?> declaringClass = StackWalker.getInstance(Option.RETAIN_CLASS_REFERENCE).getCallerClass();
@@ -72,7 +149,6 @@ public interface Logger {
     if (configInitializer != LoggerImpl.EMPTY_CONSUMER) {
       LoggerConfig.fromClass(configClass).update(configInitializer);
     }
-    MethodHandle mh = LoggerImpl.getLoggingMethodHandle(configClass, 4); 
-    return LoggerImpl.createLogger(mh);
+    return LoggerImpl.createLogger(configClass);
   }
 }
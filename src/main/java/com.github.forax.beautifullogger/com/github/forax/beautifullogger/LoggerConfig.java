@@ -4,13 +4,23 @@ import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigKind.CLASS
 import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigKind.MODULE;
 import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigKind.PACKAGE;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 
 import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerImpl.CharSequencePrintFactory;
 
 public interface LoggerConfig {
   @FunctionalInterface
@@ -18,6 +28,13 @@ public interface LoggerConfig {
     void print(String message, Level level, Throwable context);
   }
   
+  // the message is only valid during the call, a message provided by a MessageAppender
+  // is not converted to a String
+  @FunctionalInterface
+  interface CharSequencePrinter {
+    void print(CharSequence message, Level level, Throwable context);
+  }
+  
   @FunctionalInterface
   interface PrintFactory {
     MethodHandle getPrintMethodHandle(Class<?> configClass);
@@ -34,7 +51,33 @@ public interface LoggerConfig {
       return __ -> target;
     }
     
+    static PrintFactory charSequencePrinter(CharSequencePrinter printer) {
+      MethodHandle mh;
+      try {
+        mh = MethodHandles.lookup().findVirtual(CharSequencePrinter.class, "print",
+            MethodType.methodType(void.class, CharSequence.class, Level.class, Throwable.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+      MethodHandle target = mh.bindTo(printer);
+      return new CharSequencePrintFactory() {
+        @Override
+        public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+          return target.asType(MethodType.methodType(void.class, String.class, Level.class, Throwable.class));
+        }
+        @Override
+        public MethodHandle getCharSequencePrintMethodHandle(Class<?> configClass) {
+          return target;
+        }
+      };
+    }
+    
+    // if java.util.logging is the backend, the events are logged directly to java.util.logging,
+    // so the source of the records is the caller of the log method
     static PrintFactory systemLogger() {
+      if (isJULTheSystemLoggerBackend()) {
+        return JulPrintFactory.INSTANCE;
+      }
       MethodHandle mh, filter;
       try {
         mh = MethodHandles.publicLookup().findVirtual(System.Logger.class, "log",
@@ -51,6 +94,100 @@ public interface LoggerConfig {
       return configClass -> target.bindTo(System.getLogger(configClass.getName()));
     }
     
+    static AsyncPrintFactory async(PrintFactory delegate, int capacity, OverflowPolicy policy) {
+      return async(delegate, capacity, policy, AsyncPrintFactoryImpl.daemonThreadFactory());
+    }
+    
+    // the thread factory can create a virtual thread
+    static AsyncPrintFactory async(PrintFactory delegate, int capacity, OverflowPolicy policy, ThreadFactory threadFactory) {
+      return new AsyncPrintFactoryImpl(delegate, capacity, policy, threadFactory);
+    }
+    
+    // the file is written through memory mapped regions of regionSize bytes,
+    // the unused end of each region is filled with zeroes
+    static MappedFilePrintFactory mappedFile(Path path, long regionSize) throws IOException {
+      return new MappedFileAppender(path, regionSize);
+    }
+    
+    // record the message providers and their arguments instead of the messages,
+    // the file is written through memory mapped regions of regionSize bytes
+    static BinaryLogPrintFactory binaryLog(Path path, long regionSize) throws IOException {
+      return new BinaryEventLog(path, regionSize);
+    }
+    
+    // events are written and forced to the disk by batch, see CommitPolicy
+    static GroupCommitPrintFactory groupCommit(Path path, CommitPolicy policy) throws IOException {
+      return new GroupCommitAppender(path, policy);
+    }
+    
+    // the events are written in segments named path.1, path.2, etc, the next segment is opened
+    // in advance and replaces the current one when the policy says so, without blocking the writers,
+    // the numbering continues after the segments already present in the directory
+    static RollingFilePrintFactory rollingFile(Path path, RollingPolicy policy) throws IOException {
+      return new RollingFileAppender(path, policy);
+    }
+    
+    // print each event as one line of JSON, the fields of the structured events
+    // are encoded without creating an intermediary string
+    static PrintFactory json(Writer writer) {
+      return new JsonPrintFactory(writer);
+    }
+    
+    // encode the events as UTF-8 into a per thread direct buffer written to the channel,
+    // printing an event allocates nothing apart from the message
+    static PrintFactory channel(WritableByteChannel channel) {
+      return new ChannelAppender(channel);
+    }
+    
+    // commit each event as a JFR event, if no recording is running the message provider is not called,
+    // jdk.jfr is an optional dependency
+    static PrintFactory jfr() {
+      if (!JfrEvents.AVAILABLE) {
+        throw new IllegalStateException("the module jdk.jfr is not available");
+      }
+      return JfrPrintFactory.INSTANCE;
+    }
+    
+    // print the first occurrence of an event then, at the end of the window, the number of times it was repeated,
+    // two events are the same if they have the same config class, level, class of message provider and class of exception,
+    // the message provider of a repeated event is not called
+    static PrintFactory deduplicate(PrintFactory delegate, Duration window) {
+      Objects.requireNonNull(delegate, "delegate is null");
+      Objects.requireNonNull(window, "window is null");
+      long windowNanos = window.toNanos();
+      if (windowNanos <= 0) {
+        throw new IllegalArgumentException("invalid window " + window);
+      }
+      return new DeduplicatingPrintFactory(delegate, windowNanos);
+    }
+    
+    // send each event to all the sinks in order, the sinks are combined in one method handle,
+    // so the JITs can inline all of them, see atLevel() to filter the events of a sink.
+    // The guards of jfr() or deduplicate() only apply to their sink, inside a tee
+    // deduplicate() compares the messages instead of the classes of the message providers
+    static PrintFactory tee(PrintFactory... sinks) {
+      List<PrintFactory> factories = List.of(sinks);
+      if (factories.isEmpty()) {
+        throw new IllegalArgumentException("no sink");
+      }
+      return new TeePrintFactory(factories);
+    }
+    
+    // only send the events with a level greater or equals to minLevel to the delegate,
+    // the message provider of an event below minLevel is not called
+    static PrintFactory atLevel(Level minLevel, PrintFactory delegate) {
+      Objects.requireNonNull(minLevel, "minLevel is null");
+      Objects.requireNonNull(delegate, "delegate is null");
+      return new AtLevelPrintFactory(minLevel, delegate);
+    }
+    
+    // the default LoggerFinder maps the System.Loggers to the java.util.logging loggers,
+    // java.logging is an optional dependency
+    private static boolean isJULTheSystemLoggerBackend() {
+      return ModuleLayer.boot().findModule("java.logging").isPresent() &&
+          System.LoggerFinder.getLoggerFinder().getClass().getName().equals("sun.util.logging.internal.LoggingProviderImpl");
+    }
+    
     @SuppressWarnings("unused")
     private static System.Logger.Level level(Level level) {
       // do not use a switch here, we want this code to be inlined !
@@ -77,26 +214,311 @@ public interface LoggerConfig {
     }
   }
   
+  enum OverflowPolicy {
+    BLOCK, DROP_NEWEST, DROP_OLDEST, CALLER_RUNS
+  }
+  
+  // the consumer thread is stopped by close(), or by a shutdown hook when the VM exits,
+  // the queued events are printed before, the events logged after close() are printed by the caller
+  interface AsyncPrintFactory extends PrintFactory, AutoCloseable {
+    long droppedEventCount();
+    
+    // wait until the events queued before the call are printed (or dropped)
+    void flush();
+    
+    @Override
+    void close();
+  }
+  
+  // the flusher thread is stopped by close(), or by a shutdown hook when the VM exits,
+  // the pending events are written and forced to the disk before,
+  // the events logged after close() are rejected with an IllegalStateException
+  interface GroupCommitPrintFactory extends PrintFactory, AutoCloseable {
+    // wait until the events printed before the call are durable
+    void flush();
+    
+    @Override
+    void close();
+  }
+  
+  // close() retires the current segment like a rotation does, i.e. closes and compresses it,
+  // deletes the segment opened in advance and waits for the background threads,
+  // the events logged after close() are rejected with an IllegalStateException
+  interface RollingFilePrintFactory extends PrintFactory, AutoCloseable {
+    @Override
+    void close();
+  }
+  
+  // close() forces the file to the disk and truncates it after the last event,
+  // so a file written in several sessions has no padding between them,
+  // the events logged after close() are rejected with an IllegalStateException
+  interface MappedFilePrintFactory extends PrintFactory, AutoCloseable {
+    // force the events written so far to the disk
+    void flush();
+    
+    @Override
+    void close();
+  }
+  
+  // flush() and close() behave like the ones of MappedFilePrintFactory
+  interface BinaryLogPrintFactory extends PrintFactory, AutoCloseable {
+    void flush();
+    
+    @Override
+    void close();
+    
+    // decode the events recorded so far as text lines,
+    // the message providers of the current session are called to format the messages
+    void decode(Appendable appendable) throws IOException;
+    
+    // decode a binary log without the message providers, the messages are formatted
+    // using the class name of the message provider followed by the arguments
+    static void decode(Path path, Appendable appendable) throws IOException {
+      BinaryEventLog.decode(path, appendable, Map.of());
+    }
+  }
+  
+  // a batch is flushed when it contains maxEvents events or when its first event is older than maxDelayMicros,
+  // an event with a level greater or equals to the sync level flushes the batch and waits until it is durable
+  final class CommitPolicy {
+    final int maxEvents;
+    final long maxDelayMicros;
+    final Level syncLevel;  // nullable
+    
+    private CommitPolicy(int maxEvents, long maxDelayMicros, Level syncLevel) {
+      if (maxEvents <= 0) {
+        throw new IllegalArgumentException("maxEvents <= 0");
+      }
+      if (maxDelayMicros < 0) {
+        throw new IllegalArgumentException("maxDelayMicros < 0");
+      }
+      this.maxEvents = maxEvents;
+      this.maxDelayMicros = maxDelayMicros;
+      this.syncLevel = syncLevel;
+    }
+    
+    public static CommitPolicy everyEvents(int maxEvents) {
+      return new CommitPolicy(maxEvents, Long.MAX_VALUE, null);
+    }
+    public static CommitPolicy everyMicros(long maxDelayMicros) {
+      return new CommitPolicy(Integer.MAX_VALUE, maxDelayMicros, null);
+    }
+    
+    public CommitPolicy orEveryEvents(int maxEvents) {
+      return new CommitPolicy(maxEvents, maxDelayMicros, syncLevel);
+    }
+    public CommitPolicy orEveryMicros(long maxDelayMicros) {
+      return new CommitPolicy(maxEvents, maxDelayMicros, syncLevel);
+    }
+    public CommitPolicy syncLevel(Level level) {
+      return new CommitPolicy(maxEvents, maxDelayMicros, Objects.requireNonNull(level));
+    }
+    public CommitPolicy syncOnError() {
+      return syncLevel(Level.ERROR);
+    }
+  }
+  
+  // the current segment of a rolling file is replaced when its size reaches maxBytes
+  // or when it is older than maxAge, the replaced segments are compressed with GZIP in the background
+  // unless the policy is withoutCompression()
+  final class RollingPolicy {
+    final long maxBytes;
+    final long maxAgeMillis;
+    final boolean compress;
+    
+    private RollingPolicy(long maxBytes, long maxAgeMillis, boolean compress) {
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("maxBytes <= 0");
+      }
+      if (maxAgeMillis <= 0) {
+        throw new IllegalArgumentException("maxAge <= 0");
+      }
+      this.maxBytes = maxBytes;
+      this.maxAgeMillis = maxAgeMillis;
+      this.compress = compress;
+    }
+    
+    public static RollingPolicy everyBytes(long maxBytes) {
+      return new RollingPolicy(maxBytes, Long.MAX_VALUE, true);
+    }
+    public static RollingPolicy every(Duration maxAge) {
+      return new RollingPolicy(Long.MAX_VALUE, maxAge.toMillis(), true);
+    }
+    
+    public RollingPolicy orEveryBytes(long maxBytes) {
+      return new RollingPolicy(maxBytes, maxAgeMillis, compress);
+    }
+    public RollingPolicy orEvery(Duration maxAge) {
+      return new RollingPolicy(maxBytes, maxAge.toMillis(), compress);
+    }
+    public RollingPolicy withoutCompression() {
+      return new RollingPolicy(maxBytes, maxAgeMillis, false);
+    }
+  }
+  
+  // events with a level lower or equals to the level of the rate limit are limited
+  // to permitsPerSecond events per second and per config class with bursts of at most burst events,
+  // the number of suppressed events is reported periodically
+  final class RateLimit {
+    final Level level;
+    final long permitsPerSecond;
+    final int burst;
+    
+    // one bucket by config class, shared by all its call sites, even after a re-link
+    private final ClassValue<TokenBucket> buckets = new ClassValue<>() {
+      @Override
+      protected TokenBucket computeValue(Class<?> configClass) {
+        return new TokenBucket(level, permitsPerSecond, burst);
+      }
+    };
+    
+    RateLimit(Level level, long permitsPerSecond, int burst) {
+      if (permitsPerSecond <= 0) {
+        throw new IllegalArgumentException("permitsPerSecond <= 0");
+      }
+      if (burst <= 0) {
+        throw new IllegalArgumentException("burst <= 0");
+      }
+      this.level = Objects.requireNonNull(level);
+      this.permitsPerSecond = permitsPerSecond;
+      this.burst = burst;
+    }
+    
+    public Level level() {
+      return level;
+    }
+    public long permitsPerSecond() {
+      return permitsPerSecond;
+    }
+    public int burst() {
+      return burst;
+    }
+    
+    TokenBucket bucket(Class<?> configClass) {
+      return buckets.get(configClass);
+    }
+    
+    @Override
+    public String toString() {
+      return "RateLimit(" + level + ", " + permitsPerSecond + "/s, burst " + burst + ")";
+    }
+  }
+  
+  // the events below the level of the configuration are recorded in a ring of capacity events per thread,
+  // when a thread logs an ERROR, the events it has recorded are printed before the error.
+  // The message providers are only called when the events are printed, so the ring of a thread keeps
+  // its last message providers, arguments and exceptions alive until they are overwritten or printed.
+  // With a maxAge, the events older than maxAge are not printed and are released
+  // the next time the thread logs, the ring of an idle thread is only released when the thread ends
+  final class FlightRecorder {
+    final int capacity;
+    final Duration maxAge;  // nullable
+    final EventRing ring;
+    
+    FlightRecorder(int capacity, Duration maxAge) {
+      if (capacity <= 0) {
+        throw new IllegalArgumentException("capacity <= 0");
+      }
+      if (maxAge != null && (maxAge.isNegative() || maxAge.isZero())) {
+        throw new IllegalArgumentException("maxAge <= 0");
+      }
+      this.capacity = capacity;
+      this.maxAge = maxAge;
+      this.ring = new EventRing(capacity, (maxAge == null)? Long.MAX_VALUE: saturatedNanos(maxAge));
+    }
+    
+    private static long saturatedNanos(Duration duration) {
+      try {
+        return duration.toNanos();
+      } catch (ArithmeticException e) {
+        return Long.MAX_VALUE;
+      }
+    }
+    
+    public int capacity() {
+      return capacity;
+    }
+    
+    public Optional<Duration> maxAge() {
+      return Optional.ofNullable(maxAge);
+    }
+    
+    @Override
+    public String toString() {
+      return "FlightRecorder(" + capacity + ((maxAge == null)? "": ", maxAge " + maxAge) + ")";
+    }
+  }
   
   
   interface ConfigOption {
     ConfigOption enable(boolean enable);
     ConfigOption level(Level level);
     ConfigOption printFactory(PrintFactory factory);
+    ConfigOption rateLimit(Level level, long permitsPerSecond, int burst);
+    ConfigOption metrics(boolean metrics);
+    ConfigOption flightRecorder(int capacity);
+    ConfigOption flightRecorder(int capacity, Duration maxAge);
+  }
+  
+  // collect the updates of several configurations, see batch()
+  interface Batch {
+    Batch update(LoggerConfig config, Consumer<? super ConfigOption> configUpdater);
   }
   
   Optional<Boolean> enable();
   Optional<Level> level();
   Optional<PrintFactory> printFactory();
+  Optional<RateLimit> rateLimit();
+  Optional<Boolean> metrics();
+  Optional<FlightRecorder> flightRecorder();
   
   LoggerConfig update(Consumer<? super ConfigOption> configUpdater);
   
+  // apply the updates of several configurations atomically,
+  // the loggers are invalidated only once for the whole batch
+  static void batch(Consumer<? super Batch> batchUpdater) {
+    LoggerImpl.batch(batchUpdater);
+  }
+  
+  // run the action with a level override for the current thread only,
+  // the override can only lower the level of the loggers that are enabled,
+  // the loggers do not pay for this feature until the first override starts
+  static void withLevel(Level level, Runnable action) {
+    LoggerImpl.withLevel(level, action);
+  }
+  
+  // for each config class name, the number of call sites that have seen too many message provider classes
+  // and dispatch on the functional interface instead of the class of the message provider
+  static Map<String, Long> megamorphicLoggers() {
+    return LoggerImpl.megamorphicLoggers();
+  }
+  
+  // the number of events by config class name and by level, only the loggers with the option metrics
+  // are counted, a logger without this option does not pay for the counters.
+  // It's also available as the platform MBean com.github.forax.beautifullogger:type=Metrics
+  // if the module java.management is available
+  interface MetricsMXBean {
+    // events sent to the print factory
+    Map<String, Map<Level, Long>> getEmittedEvents();
+    // events below the level of the configuration
+    Map<String, Map<Level, Long>> getLevelSuppressedEvents();
+    // events of a disabled configuration
+    Map<String, Map<Level, Long>> getDisableSuppressedEvents();
+    void reset();
+  }
+  
+  static MetricsMXBean eventMetrics() {
+    return LoggerMetrics.INSTANCE;
+  }
+  
   static LoggerConfig fromClass(Class<?> configClass) {
     return fromClass(configClass.getName());
   }
   static LoggerConfig fromClass(String className) {
     return LoggerImpl.configFrom(CLASS, className);
   }
+  // a package configuration also applies to the sub-packages,
+  // a value is searched in the class, then the package, the parent packages and the module
   static LoggerConfig fromPackage(Package packaze) {
     return fromPackage(packaze.getName());
   }
@@ -0,0 +1,89 @@
+package com.github.forax.beautifullogger;
+
+import java.time.Duration;
+import java.util.Map;
+
+import com.github.forax.beautifullogger.LoggerConfig.Printer;
+
+// The internal cost of the dynamic reconfiguration by config class name.
+// A logger call site relinks when it is called for the first time or after its configuration has changed,
+// a message provider call site relinks when it sees a new class of message provider.
+// The statistics are only updated by the relinks, not by the logging calls.
+public interface LoggerDiagnostics {
+  final class Stats {
+    final long relinks;
+    final long providerRelinks;
+    final int switchPoints;
+    final int maxSwitchPoints;
+    final long relinkNanos;
+    final long maxRelinkNanos;
+    final int maxInlineCacheDepth;
+
+    Stats(long relinks, long providerRelinks, int switchPoints, int maxSwitchPoints,
+          long relinkNanos, long maxRelinkNanos, int maxInlineCacheDepth) {
+      this.relinks = relinks;
+      this.providerRelinks = providerRelinks;
+      this.switchPoints = switchPoints;
+      this.maxSwitchPoints = maxSwitchPoints;
+      this.relinkNanos = relinkNanos;
+      this.maxRelinkNanos = maxRelinkNanos;
+      this.maxInlineCacheDepth = maxInlineCacheDepth;
+    }
+
+    // number of times a logger call site has built its method handle tree
+    public long relinks() {
+      return relinks;
+    }
+    // number of times a message provider call site has seen a new class of message provider
+    public long providerRelinks() {
+      return providerRelinks;
+    }
+    // number of switch points guarding the last relink
+    public int switchPoints() {
+      return switchPoints;
+    }
+    public int maxSwitchPoints() {
+      return maxSwitchPoints;
+    }
+    // total time spent building the method handle trees
+    public long relinkNanos() {
+      return relinkNanos;
+    }
+    public long maxRelinkNanos() {
+      return maxRelinkNanos;
+    }
+    // the maximum number of message provider classes seen by a call site,
+    // after 8 classes, a call site is megamorphic, see LoggerConfig.megamorphicLoggers()
+    public int maxInlineCacheDepth() {
+      return maxInlineCacheDepth;
+    }
+
+    @Override
+    public String toString() {
+      return "relinks " + relinks + ", provider relinks " + providerRelinks +
+          ", switch points " + switchPoints + " (max " + maxSwitchPoints + ")" +
+          ", relink time " + relinkNanos / 1_000 + "us (max " + maxRelinkNanos / 1_000 + "us)" +
+          ", inline cache depth " + maxInlineCacheDepth;
+    }
+  }
+
+  // a periodic dump, close() stops it
+  interface Dump extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  static Map<String, Stats> stats() {
+    return LoggerDiagnosticsImpl.stats();
+  }
+
+  static void reset() {
+    LoggerDiagnosticsImpl.reset();
+  }
+
+  // print the statistics of each config class that has relinked with the level INFO every period,
+  // each line also contains the number of relinks since the previous dump
+  static Dump dumpEvery(Duration period, Printer printer) {
+    return LoggerDiagnosticsImpl.dumpEvery(period, printer);
+  }
+}
@@ -0,0 +1,114 @@
+package com.github.forax.beautifullogger;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.Printer;
+import com.github.forax.beautifullogger.LoggerDiagnostics.Dump;
+import com.github.forax.beautifullogger.LoggerDiagnostics.Stats;
+
+// the counters are only updated by the fallback of the call sites
+class LoggerDiagnosticsImpl {
+  private LoggerDiagnosticsImpl() {
+    throw new AssertionError();
+  }
+
+  static class Counters {
+    private final LongAdder relinks = new LongAdder();
+    private final LongAdder providerRelinks = new LongAdder();
+    private final AtomicInteger switchPoints = new AtomicInteger();
+    private final AtomicInteger maxSwitchPoints = new AtomicInteger();
+    private final LongAdder relinkNanos = new LongAdder();
+    private final AtomicLong maxRelinkNanos = new AtomicLong();
+    private final AtomicInteger maxInlineCacheDepth = new AtomicInteger();
+
+    void relink(int switchPoints, long nanos) {
+      relinks.increment();
+      this.switchPoints.set(switchPoints);
+      maxSwitchPoints.accumulateAndGet(switchPoints, Math::max);
+      relinkNanos.add(nanos);
+      maxRelinkNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void providerRelink(int inlineCacheDepth) {
+      providerRelinks.increment();
+      maxInlineCacheDepth.accumulateAndGet(inlineCacheDepth, Math::max);
+    }
+
+    Stats stats() {
+      return new Stats(relinks.sum(), providerRelinks.sum(), switchPoints.get(), maxSwitchPoints.get(),
+          relinkNanos.sum(), maxRelinkNanos.get(), maxInlineCacheDepth.get());
+    }
+
+    void reset() {
+      relinks.reset();
+      providerRelinks.reset();
+      switchPoints.set(0);
+      maxSwitchPoints.set(0);
+      relinkNanos.reset();
+      maxRelinkNanos.set(0);
+      maxInlineCacheDepth.set(0);
+    }
+  }
+
+  private static final ConcurrentHashMap<String, Counters> COUNTERS = new ConcurrentHashMap<>();
+
+  static Counters counters(Class<?> configClass) {
+    return COUNTERS.computeIfAbsent(configClass.getName(), __ -> new Counters());
+  }
+
+  static Map<String, Stats> stats() {
+    return COUNTERS.entrySet().stream()
+        .collect(Collectors.toUnmodifiableMap(Entry::getKey, entry -> entry.getValue().stats()));
+  }
+
+  static void reset() {
+    COUNTERS.values().forEach(Counters::reset);
+  }
+
+  static Dump dumpEvery(Duration period, Printer printer) {
+    Objects.requireNonNull(period, "period is null");
+    Objects.requireNonNull(printer, "printer is null");
+    long periodNanos = period.toNanos();
+    if (periodNanos <= 0) {
+      throw new IllegalArgumentException("invalid period " + period);
+    }
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "beautiful-logger-diagnostics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    HashMap<String, Long> previousRelinks = new HashMap<>();  // only accessed by the executor thread
+    executor.scheduleAtFixedRate(() -> {
+      try {
+        stats().entrySet().stream()
+            .sorted(Entry.comparingByKey())
+            .forEach(entry -> {
+              String name = entry.getKey();
+              Stats stats = entry.getValue();
+              long previous = previousRelinks.getOrDefault(name, 0L);
+              previousRelinks.put(name, stats.relinks);
+              long delta = stats.relinks >= previous? stats.relinks - previous: stats.relinks;  // reset() was called
+              printer.print("logger diagnostics " + name + ": " + stats + ", relinks since last dump " + delta,
+                  Level.INFO, null);
+            });
+      } catch (RuntimeException | Error e) {
+        // the dump must survive to a failing printer
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    return executor::shutdownNow;
+  }
+}
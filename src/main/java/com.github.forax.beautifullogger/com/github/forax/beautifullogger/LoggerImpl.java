@@ -1,18 +1,22 @@
 package com.github.forax.beautifullogger;
 
 import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigFeature.ENABLE_CONF;
+import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigFeature.FLIGHTRECORDER_CONF;
 import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigFeature.LEVEL_CONF;
+import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigFeature.METRICS_CONF;
 import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigFeature.PRINTFACTORY_CONF;
+import static com.github.forax.beautifullogger.LoggerImpl.LoggerConfigFeature.RATELIMIT_CONF;
 import static java.lang.invoke.MethodHandles.dropArguments;
 import static java.lang.invoke.MethodHandles.empty;
 import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.filterArguments;
 import static java.lang.invoke.MethodHandles.foldArguments;
 import static java.lang.invoke.MethodHandles.guardWithTest;
 import static java.lang.invoke.MethodHandles.identity;
 import static java.lang.invoke.MethodHandles.insertArguments;
 import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodHandles.permuteArguments;
 import static java.lang.invoke.MethodHandles.publicLookup;
-import static java.lang.invoke.MethodType.genericMethodType;
 import static java.lang.invoke.MethodType.methodType;
 import static java.util.Collections.nCopies;
 import static java.util.Map.entry;
@@ -23,16 +27,21 @@ import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.MutableCallSite;
 import java.lang.invoke.SwitchPoint;
-import java.lang.reflect.Field;
 import java.lang.reflect.UndeclaredThrowableException;
-import java.util.Base64;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.DoubleFunction;
@@ -40,12 +49,24 @@ import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.LongFunction;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import com.github.forax.beautifullogger.Logger.FieldWriter;
+import com.github.forax.beautifullogger.Logger.Fields;
 import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.Logger.MessageAppender;
+import com.github.forax.beautifullogger.Logger.ObjDoubleFunction;
+import com.github.forax.beautifullogger.Logger.ObjIntFunction;
+import com.github.forax.beautifullogger.Logger.ObjLongFunction;
+import com.github.forax.beautifullogger.Logger.QuadFunction;
+import com.github.forax.beautifullogger.Logger.TriFunction;
+import com.github.forax.beautifullogger.LoggerConfig.Batch;
 import com.github.forax.beautifullogger.LoggerConfig.ConfigOption;
+import com.github.forax.beautifullogger.LoggerConfig.FlightRecorder;
 import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
-
-import sun.misc.Unsafe;
+import com.github.forax.beautifullogger.LoggerConfig.RateLimit;
+import com.github.forax.beautifullogger.LoggerImpl.LoggerConfigImpl.ConfigOptionImpl;
+import com.github.forax.beautifullogger.LoggerImpl.LoggerConfigImpl.Snapshot;
 
 class LoggerImpl {
   private static class None {
@@ -62,16 +83,25 @@ class LoggerImpl {
   }
   
   static MethodHandle getLoggingMethodHandle(Class<?> configClass, int maxParameter) {
-    return new CS(configClass, maxParameter).dynamicInvoker();
+    return getLoggingMethodHandle(configClass,
+        methodType(void.class, Level.class, Throwable.class, Object.class).appendParameterTypes(nCopies(maxParameter, Object.class)));
+  }
+  
+  // the type is (Level, Throwable, Object, parameterTypes...)void,
+  // a parameter type can be a primitive type to avoid boxing
+  static MethodHandle getLoggingMethodHandle(Class<?> configClass, MethodType type) {
+    return new CS(configClass, type).dynamicInvoker();
   }
   
   private static class CS extends MutableCallSite {
     private static final MethodHandle FALLBACK;
     private static final MethodHandle[] CHECK_LEVELS;
+    private static final MethodHandle CHECK_LEVEL_OVERRIDE;
     static {
       Lookup lookup = lookup();
       try {
         FALLBACK = lookup.findVirtual(CS.class, "fallback", methodType(MethodHandle.class, Level.class,  Throwable.class, Object.class, Object[].class));
+        CHECK_LEVEL_OVERRIDE = lookup.findStatic(CS.class, "checkLevelOverride", methodType(boolean.class, Level.class));
         
         MethodHandle[] checkLevels = new MethodHandle[Level.LEVELS.length];
         for(int i = 0; i < checkLevels.length; i++) {
@@ -86,12 +116,15 @@ class LoggerImpl {
     private final int maxParameters;
     private final Class<?> configClass;
     private final MethodHandle fallback;
+    private final LoggerDiagnosticsImpl.Counters diagnostics;
 
-    CS(Class<?> configClass, int maxParameters) {
-      super(methodType(void.class, Level.class, Throwable.class, Object.class).appendParameterTypes(nCopies(maxParameters, Object.class)));
-      this.maxParameters = maxParameters;
+    CS(Class<?> configClass, MethodType type) {
+      super(type);
+      this.maxParameters = type.parameterCount() - 3;
       this.configClass = configClass;
-      MethodHandle fallback = foldArguments(exactInvoker(type()), FALLBACK.bindTo(this).asCollector(Object[].class, maxParameters));
+      this.diagnostics = LoggerDiagnosticsImpl.counters(configClass);
+      MethodHandle fallback = foldArguments(exactInvoker(type()),
+          FALLBACK.bindTo(this).asCollector(Object[].class, maxParameters).asType(type.changeReturnType(MethodHandle.class)));
       this.fallback = fallback;
       setTarget(fallback);
     }
@@ -101,10 +134,17 @@ class LoggerImpl {
       Objects.requireNonNull(level, "level is null");
       Objects.requireNonNull(messageProvider, "message provider is null");      
       
+      long start = System.nanoTime();
+      Object relinkEvent = JfrEvents.beginRelink();  // null if no recording is running
+      
       // check configuration flag 'enable'
       LinkedHashSet<SwitchPoint> switchPoints = new LinkedHashSet<>();
       boolean enable = ENABLE_CONF.findValueAndCollectSwitchPoints(configClass, switchPoints).orElse(true);
       
+      // check configuration flag 'metrics', without it the tree contains no counter
+      boolean metrics = METRICS_CONF.findValueAndCollectSwitchPoints(configClass, switchPoints).orElse(false);
+      LoggerMetrics.Counters counters = metrics? LoggerMetrics.counters(configClass.getName()): null;
+      
       MethodHandle target;
       MethodHandle empty = empty(type());
       if (enable) {
@@ -113,21 +153,77 @@ class LoggerImpl {
             .orElseGet(() -> PrintFactory.systemLogger());
         MethodHandle print = dropArguments(
             printFactory.getPrintMethodHandle(configClass),
-            3, nCopies(1 + maxParameters, Object.class));
+            3, type().parameterList().subList(2, 3 + maxParameters));
+        
+        // a deferred print factory records the message provider and its arguments instead of the message
+        DeferredPrintFactory deferred = (printFactory instanceof DeferredPrintFactory)? (DeferredPrintFactory)printFactory: null;
         
         // create the message provider call site, we already have the arguments of the first call here,
         // so we can directly call the fallback to avoid an unnecessary round trip 
-        MessageProviderCS providerCallSite = new MessageProviderCS(type(), maxParameters, print); 
+        // a structured print factory receives the event and the fields of a structured event
+        MethodHandle structured = (printFactory instanceof StructuredPrintFactory)?
+            structuredPrint((StructuredPrintFactory)printFactory): null;
+        // a message appender appends the message to a per thread builder
+        MethodHandle appender = appenderPrint(printFactory);
+        
+        MessageProviderCS providerCallSite = new MessageProviderCS(type(), maxParameters, print, configClass,
+            deferred, structured, appender, 0);
         providerCallSite.fallback(messageProvider, args);
         target = providerCallSite.getTarget();
+        if (counters != null) {
+          target = foldArguments(target, increment(counters.emitted));
+        }
+        
+        // a print factory switched off from the outside, i.e. no JFR recording, does not call the message provider
+        if (printFactory instanceof FilteredPrintFactory) {
+          MethodHandle isEnabled = ((FilteredPrintFactory)printFactory).getIsEnabledMethodHandle(configClass);
+          target = guardWithTest(dropArguments(isEnabled, 0, type().parameterList()), target, empty);
+        }
+        
+        // a print factory that drops some events, i.e. the repeated ones, does it before the message provider is called
+        if (printFactory instanceof EventFilterPrintFactory) {
+          MethodHandle accept = ((EventFilterPrintFactory)printFactory).getEventFilterMethodHandle(configClass);
+          target = guardWithTest(
+              dropArguments(accept, 3, type().parameterList().subList(3, type().parameterCount())),
+              target, empty);
+        }
+        
+        // check configuration rate limit, after the level check so the bucket only sees enabled events
+        Optional<RateLimit> rateLimit = RATELIMIT_CONF.findValueAndCollectSwitchPoints(configClass, switchPoints);
+        if (rateLimit.isPresent()) {
+          TokenBucket bucket = rateLimit.get().bucket(configClass);
+          bucket.print(printFactory.getPrintMethodHandle(configClass));
+          target = guardWithTest(
+              dropArguments(TokenBucket.TRY_ACQUIRE.bindTo(bucket), 1, type().parameterList().subList(1, type().parameterCount())),
+              target, empty);
+        }
+        
+        // check the level override of the current thread only if an override was started once
+        MethodHandle suppressed = (counters == null)? empty: increment(counters.levelSuppressed);
+        
+        // check configuration flight recorder, the events below the level are recorded
+        // and printed before the next ERROR of the same thread
+        Optional<FlightRecorder> flightRecorder = FLIGHTRECORDER_CONF.findValueAndCollectSwitchPoints(configClass, switchPoints);
+        if (flightRecorder.isPresent()) {
+          EventRing ring = flightRecorder.get().ring;
+          suppressed = foldArguments(suppressed, ring.recordMethodHandle(type()));
+          target = foldArguments(target, ring.dumpMethodHandle(printFactory.getPrintMethodHandle(configClass), type()));
+        }
+        
+        MethodHandle otherwise = suppressed;
+        if (NO_LEVEL_OVERRIDE.hasBeenInvalidated()) {
+          otherwise = guardWithTest(CHECK_LEVEL_OVERRIDE, target, suppressed);
+        } else {
+          switchPoints.add(NO_LEVEL_OVERRIDE);
+        }
         
         // check configuration level
         Level configLevel = LEVEL_CONF.findValueAndCollectSwitchPoints(configClass, switchPoints).orElse(Level.INFO);
-        target = guardWithTest(CHECK_LEVELS[configLevel.ordinal()], target, empty);
+        target = guardWithTest(CHECK_LEVELS[configLevel.ordinal()], target, otherwise);
         
       } else {
         // if disable, do nothing !
-        target = empty;
+        target = (counters == null)? empty: increment(counters.disableSuppressed);
       }
       
       // avoid recursion (i.e. non progression) if the switch points are invalidated
@@ -140,9 +236,60 @@ class LoggerImpl {
       }
       
       setTarget(target);
+      
+      diagnostics.relink(switchPoints.size(), System.nanoTime() - start);
+      JfrEvents.commitRelink(relinkEvent, configClass, level, enable);
       return result;
     }
     
+    // increment the counter of the level of the event
+    private MethodHandle increment(LongAdder[] counters) {
+      return dropArguments(LoggerMetrics.INCREMENT.bindTo(counters), 1, type().parameterList().subList(1, type().parameterCount()));
+    }
+    
+    // adapt (event, fields, level, context) to the type of the call site (level, context, fields, event, ...)
+    private MethodHandle structuredPrint(StructuredPrintFactory printFactory) {
+      if (maxParameters == 0 || type().parameterType(3) != Object.class) {  // a structured event needs an object argument
+        return null;
+      }
+      return adapt(printFactory.getStructuredPrintMethodHandle(configClass), 3, 2);
+    }
+    
+    // adapt (appender, arg0, level, context) to the type of the call site (level, context, appender, arg0, ...)
+    private MethodHandle appenderPrint(PrintFactory printFactory) {
+      if (maxParameters == 0 || type().parameterType(3) != Object.class) {  // an appender takes an object argument
+        return null;
+      }
+      MethodHandle print = (printFactory instanceof CharSequencePrintFactory)?
+          ((CharSequencePrintFactory)printFactory).getCharSequencePrintMethodHandle(configClass):
+          filterArguments(printFactory.getPrintMethodHandle(configClass), 0, AppenderPrinter.TO_STRING);
+      AppenderPrinter printer = new AppenderPrinter(print.asType(AppenderPrinter.PRINT_TYPE));
+      return adapt(AppenderPrinter.PRINT.bindTo(printer), 2, 3);
+    }
+    
+    // adapt a method handle (Object, Object, Level, Throwable)void to the type of the call site,
+    // the two first arguments are the arguments of the call site at index first and second
+    private MethodHandle adapt(MethodHandle mh, int first, int second) {
+      List<Class<?>> parameterTypes = type().parameterList();
+      mh = mh.asType(methodType(void.class, Object.class, Object.class, Level.class, Throwable.class));
+      mh = dropArguments(mh, 4, parameterTypes.subList(4, parameterTypes.size()));
+      int[] reorder = new int[parameterTypes.size()];
+      reorder[0] = first;
+      reorder[1] = second;
+      reorder[2] = 0;
+      reorder[3] = 1;
+      for(int i = 4; i < reorder.length; i++) {
+        reorder[i] = i;
+      }
+      return permuteArguments(mh, type(), reorder);
+    }
+    
+    
+    @SuppressWarnings("unused")
+    private static boolean checkLevelOverride(Level level) {
+      Level override = LEVEL_OVERRIDE.get();
+      return override != null && level.compareTo(override) >= 0;
+    }
     
     // use one method checkLevel* by level to allow JITs to remove those checks 
     
@@ -186,8 +333,12 @@ class LoggerImpl {
     }
   }
   
+  // an inlining cache on the class of the message provider, the class is known exactly,
+  // so the JITs can inline the body of the lambda.
+  // After MAX_DEPTH classes, the call site goes megamorphic and dispatches on the functional interface,
+  // so the number of checks is bounded by the number of functional interfaces.
   private static class MessageProviderCS extends MutableCallSite {
-    private static final MethodHandle FALLBACK, IS_INSTANCE;
+    private static final MethodHandle FALLBACK, IS_INSTANCE, IS_CLASS;
     static {
       Lookup lookup = lookup();
       try {
@@ -195,26 +346,47 @@ class LoggerImpl {
             lookup.findVirtual(MessageProviderCS.class, "fallback", methodType(MethodHandle.class, Object.class, Object[].class)),
             0, Level.class, Throwable.class);
         IS_INSTANCE = lookup.findVirtual(Class.class, "isInstance", methodType(boolean.class, Object.class));
+        IS_CLASS = lookup.findStatic(MessageProviderCS.class, "isClass", methodType(boolean.class, Class.class, Object.class));
       } catch (NoSuchMethodException | IllegalAccessException e) {
         throw new AssertionError(e);
       }
     }
     
+    private static final int MAX_DEPTH = 8;
+    private static final int MEGAMORPHIC = -1;
+    
     private final int maxParameters;
     private final MethodHandle print;
+    private final Class<?> configClass;
+    private final DeferredPrintFactory deferred;  // nullable
+    private final MethodHandle structured;  // nullable
+    private final MethodHandle appender;  // nullable
+    private final int depth;  // or MEGAMORPHIC
     
-    MessageProviderCS(MethodType type, int maxParameters, MethodHandle print) {
+    MessageProviderCS(MethodType type, int maxParameters, MethodHandle print, Class<?> configClass,
+                      DeferredPrintFactory deferred, MethodHandle structured, MethodHandle appender, int depth) {
       super(type);
       this.maxParameters = maxParameters;
       this.print = print;
+      this.configClass = configClass;
+      this.deferred = deferred;
+      this.structured = structured;
+      this.appender = appender;
+      this.depth = depth;
       setTarget(foldArguments(
           exactInvoker(type()),
-          insertArguments(FALLBACK, 2, this).asCollector(Object[].class, maxParameters)));
+          insertArguments(FALLBACK, 2, this).asCollector(Object[].class, maxParameters)
+            .asType(type.changeReturnType(MethodHandle.class))));
+    }
+    
+    @SuppressWarnings("unused")
+    private static boolean isClass(Class<?> type, Object messageProvider) {
+      return messageProvider.getClass() == type;
     }
     
     MethodHandle fallback(Object messageProvider, Object[] args) {
       Entry<Class<?>, MethodHandle> pair = findFunctionalInterfaceMH(messageProvider);
-      Class<?> providerClass = pair.getKey();
+      Class<?> functionalInterface = pair.getKey();
       MethodHandle provider = pair.getValue();
 
       // check if the provider parameter count and the actual number of arguments match
@@ -225,27 +397,220 @@ class LoggerImpl {
             " for method type " + provider.type().dropParameterTypes(0, 1));
       }
       
+      // the provider class is the exact class of the provider, or the functional interface if megamorphic
+      boolean megamorphic = depth == MEGAMORPHIC;
+      Class<?> providerClass = megamorphic? functionalInterface: messageProvider.getClass();
+      provider = provider.asType(provider.type().changeParameterType(0, providerClass));
+      
       // align signature of the provider with the log signature 
+      List<Class<?>> parameterTypes = type().parameterList();
       if (providerArgumentCount != maxParameters) {
-        provider = dropArguments(provider, provider.type().parameterCount(), nCopies(maxParameters - providerArgumentCount, Object.class));
+        provider = dropArguments(provider, provider.type().parameterCount(), parameterTypes.subList(3 + providerArgumentCount, parameterTypes.size()));
       }
-      provider = provider.asType(genericMethodType(provider.type().parameterCount()).changeReturnType(String.class));
+      provider = provider.asType(methodType(String.class, parameterTypes.subList(2, parameterTypes.size())));
       provider = dropArguments(provider, 0, Level.class, Throwable.class);
       
       // fold !
       MethodHandle target = foldArguments(print, provider);
       
+      if (structured != null && functionalInterface == Fields.class) {
+        // the print factory encodes the fields itself
+        target = structured;
+      } else {
+        if (appender != null && functionalInterface == MessageAppender.class) {
+          // the message is appended to a per thread builder instead of a new string
+          target = appender;
+        }
+        if (deferred != null && !megamorphic) {
+          // try to record the message provider and its arguments, if it fails, call the provider,
+          // the recording is specific to the class of the message provider
+          MethodHandle record = deferred.getRecordMethodHandle(configClass, messageProvider, type());
+          if (record != null) {
+            target = guardWithTest(record, empty(type()), target);
+          }
+        }
+      }
+      
       // create the inlining cache
+      int nextDepth;
+      if (megamorphic) {
+        nextDepth = MEGAMORPHIC;
+      } else if (depth + 1 == MAX_DEPTH) {
+        nextDepth = MEGAMORPHIC;
+        MEGAMORPHIC_COUNTERS.computeIfAbsent(configClass.getName(), __ -> new LongAdder()).increment();
+      } else {
+        nextDepth = depth + 1;
+      }
+      LoggerDiagnosticsImpl.counters(configClass).providerRelink(megamorphic? MAX_DEPTH: depth + 1);
+      MethodHandle test = (megamorphic? IS_INSTANCE: IS_CLASS).bindTo(providerClass);
       MethodHandle guard = guardWithTest(
-          dropArguments(IS_INSTANCE.bindTo(providerClass), 0, Level.class, Throwable.class),
+          dropArguments(test, 0, Level.class, Throwable.class),
           target,
-          new MessageProviderCS(type(), maxParameters, print).dynamicInvoker());
+          new MessageProviderCS(type(), maxParameters, print, configClass, deferred, structured, appender, nextDepth).dynamicInvoker());
       setTarget(guard);
       
       return target;
     }
   }
   
+  // number of call sites that went megamorphic by config class name
+  static final ConcurrentHashMap<String, LongAdder> MEGAMORPHIC_COUNTERS = new ConcurrentHashMap<>();
+  
+  static Map<String, Long> megamorphicLoggers() {
+    return MEGAMORPHIC_COUNTERS.entrySet().stream()
+        .collect(Collectors.toUnmodifiableMap(Entry::getKey, entry -> entry.getValue().sum()));
+  }
+  
+  
+  // the level override of the current thread, nullable
+  private static final ThreadLocal<Level> LEVEL_OVERRIDE = new ThreadLocal<>();
+  
+  // invalidated when the first override starts, until then the call sites do not check the override
+  private static final SwitchPoint NO_LEVEL_OVERRIDE = new SwitchPoint();
+  
+  // a method handle (Level)boolean that returns true if the level is greater or equals to minLevel,
+  // there is one method per level, so the JITs can fold the check if the level is a constant
+  static MethodHandle checkLevel(Level minLevel) {
+    return CS.CHECK_LEVELS[minLevel.ordinal()];
+  }
+  
+  static void withLevel(Level level, Runnable action) {
+    Objects.requireNonNull(level, "level is null");
+    Objects.requireNonNull(action, "action is null");
+    if (!NO_LEVEL_OVERRIDE.hasBeenInvalidated()) {
+      SwitchPoint.invalidateAll(new SwitchPoint[] { NO_LEVEL_OVERRIDE });
+    }
+    Level oldLevel = LEVEL_OVERRIDE.get();
+    LEVEL_OVERRIDE.set(level);
+    try {
+      action.run();
+    } finally {
+      if (oldLevel == null) {
+        LEVEL_OVERRIDE.remove();
+      } else {
+        LEVEL_OVERRIDE.set(oldLevel);
+      }
+    }
+  }
+  
+  
+  // a print factory that can record the message provider and its arguments instead of the message
+  interface DeferredPrintFactory extends PrintFactory {
+    // returns a method handle with the type of the call site that returns true if the event was recorded,
+    // or null if the message provider can not be recorded
+    MethodHandle getRecordMethodHandle(Class<?> configClass, Object messageProvider, MethodType type);
+  }
+  
+  // a print factory that can print the fields of a structured event
+  interface StructuredPrintFactory extends PrintFactory {
+    // returns a method handle of type (String event, Fields fields, Level level, Throwable context)void
+    MethodHandle getStructuredPrintMethodHandle(Class<?> configClass);
+  }
+  
+  // a print factory that can be switched off from the outside, the message provider is not called if it is off
+  interface FilteredPrintFactory extends PrintFactory {
+    // returns a method handle of type ()boolean
+    MethodHandle getIsEnabledMethodHandle(Class<?> configClass);
+  }
+  
+  // a print factory that decides if an event is printed before the message provider is called
+  interface EventFilterPrintFactory extends PrintFactory {
+    // returns a method handle of type (Level level, Throwable context, Object messageProvider)boolean
+    MethodHandle getEventFilterMethodHandle(Class<?> configClass);
+  }
+  
+  // a print factory that can print a CharSequence, the sequence is only valid during the call
+  interface CharSequencePrintFactory extends PrintFactory {
+    // returns a method handle of type (CharSequence message, Level level, Throwable context)void
+    MethodHandle getCharSequencePrintMethodHandle(Class<?> configClass);
+  }
+  
+  // print the message of a message appender, the message is appended to a per thread builder
+  // that is sent to the print method handle, the builder is only used by one event at a time.
+  // It's a record because the JITs trust its final field, so print is a constant
+  private record AppenderPrinter(MethodHandle print) {
+    static final MethodType PRINT_TYPE = methodType(void.class, CharSequence.class, Level.class, Throwable.class);
+    static final MethodHandle PRINT, TO_STRING;
+    static {
+      try {
+        PRINT = lookup().findVirtual(AppenderPrinter.class, "print",
+            methodType(void.class, MessageAppender.class, Object.class, Level.class, Throwable.class));
+        TO_STRING = publicLookup().findVirtual(Object.class, "toString", methodType(String.class))
+            .asType(methodType(String.class, CharSequence.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+    
+    // do not retain a huge builder
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+    
+    private static class Buffer {
+      final StringBuilder builder = new StringBuilder(256);
+      boolean inUse;
+    }
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+    
+    @SuppressWarnings("unused")  // called by a method handle
+    private void print(MessageAppender<Object> appender, Object arg, Level level, Throwable context) throws Throwable {
+      Buffer buffer = BUFFERS.get();
+      if (buffer.inUse) {  // the appender or the printer logs
+        StringBuilder builder = new StringBuilder();
+        appender.appendTo(builder, arg);
+        print.invokeExact((CharSequence)builder, level, context);
+        return;
+      }
+      StringBuilder builder = buffer.builder;
+      buffer.inUse = true;
+      try {
+        builder.setLength(0);
+        appender.appendTo(builder, arg);
+        print.invokeExact((CharSequence)builder, level, context);
+      } finally {
+        buffer.inUse = false;
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+          builder.setLength(0);
+          builder.trimToSize();
+        }
+      }
+    }
+  }
+  
+  // the text message of a message appender when the print factory does not print a CharSequence
+  // or when a recorded event is replayed
+  static String appendToString(MessageAppender<Object> appender, Object arg) {
+    StringBuilder builder = new StringBuilder();
+    appender.appendTo(builder, arg);
+    return builder.toString();
+  }
+  
+  // the text message of a structured event for the print factories that are not structured
+  static String formatEvent(Fields fields, Object event) {
+    StringBuilder builder = new StringBuilder().append(event);
+    fields.writeTo(new FieldWriter() {
+      @Override
+      public FieldWriter field(String key, long value) {
+        builder.append(' ').append(key).append('=').append(value);
+        return this;
+      }
+      @Override
+      public FieldWriter field(String key, double value) {
+        builder.append(' ').append(key).append('=').append(value);
+        return this;
+      }
+      @Override
+      public FieldWriter field(String key, boolean value) {
+        builder.append(' ').append(key).append('=').append(value);
+        return this;
+      }
+      @Override
+      public FieldWriter field(String key, String value) {
+        builder.append(' ').append(key).append('=').append(value);
+        return this;
+      }
+    });
+    return builder.toString();
+  }
   
   private static final List<Entry<Class<?>, MethodHandle>> MESSAGE_PROVIDERS = List.of(
       findVirtualMethod(Supplier.class,       "get",   methodType(String.class)),
@@ -254,6 +619,13 @@ class LoggerImpl {
       findVirtualMethod(DoubleFunction.class, "apply", methodType(String.class, double.class)),
       findVirtualMethod(Function.class,       "apply", methodType(String.class, Object.class)),
       findVirtualMethod(BiFunction.class,     "apply", methodType(String.class, Object.class, Object.class)),
+      findVirtualMethod(TriFunction.class,    "apply", methodType(String.class, Object.class, Object.class, Object.class)),
+      findVirtualMethod(QuadFunction.class,   "apply", methodType(String.class, Object.class, Object.class, Object.class, Object.class)),
+      findVirtualMethod(ObjIntFunction.class,    "apply", methodType(String.class, Object.class, int.class)),
+      findVirtualMethod(ObjLongFunction.class,   "apply", methodType(String.class, Object.class, long.class)),
+      findVirtualMethod(ObjDoubleFunction.class, "apply", methodType(String.class, Object.class, double.class)),
+      findFormatEvent(),
+      findAppendToString(),
       entry(String.class, identity(Object.class).asType(methodType(String.class, Object.class))));
   
   private static Entry<Class<?>, MethodHandle> findVirtualMethod(Class<?> fun, String name, MethodType type) {
@@ -266,6 +638,26 @@ class LoggerImpl {
     return entry(fun, mh.asType(type.insertParameterTypes(0, fun)));
   }
   
+  private static Entry<Class<?>, MethodHandle> findFormatEvent() {
+    MethodHandle mh;
+    try {
+      mh = lookup().findStatic(LoggerImpl.class, "formatEvent", methodType(String.class, Fields.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return entry(Fields.class, mh);
+  }
+  
+  private static Entry<Class<?>, MethodHandle> findAppendToString() {
+    MethodHandle mh;
+    try {
+      mh = lookup().findStatic(LoggerImpl.class, "appendToString", methodType(String.class, MessageAppender.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return entry(MessageAppender.class, mh);
+  }
+  
   static Entry<Class<?>, MethodHandle> findFunctionalInterfaceMH(Object messageProvider) {
     return MESSAGE_PROVIDERS.stream()
         .filter(entry -> entry.getKey().isInstance(messageProvider))
@@ -293,46 +685,32 @@ class LoggerImpl {
   }
   
   enum LoggerConfigKind {
-    CLASS(Class::getName),
-    PACKAGE(Class::getPackageName),
-    MODULE(type -> type.getModule().getName());
-    
-    private final Function<Class<?>, String> nameExtractor;
-    
-    private LoggerConfigKind(Function<Class<?>, String> nameExtractor) {
-      this.nameExtractor = nameExtractor;
-    }
-    
-    String key(String name) {
-      return name() + ';' + name;
-    }
-    
-    String extractNameFromClass(Class<?> type) {
-      return nameExtractor.apply(type);
-    }
-    
-    static final LoggerConfigKind[] VALUES = values();
+    CLASS, PACKAGE, MODULE
   }
   
   static class LoggerConfigFeature<T> {
-    static final LoggerConfigFeature<Boolean> ENABLE_CONF = new LoggerConfigFeature<>(LoggerConfig::enable);
-    static final LoggerConfigFeature<Level> LEVEL_CONF = new LoggerConfigFeature<>(LoggerConfig::level);
-    static final LoggerConfigFeature<PrintFactory> PRINTFACTORY_CONF = new LoggerConfigFeature<>(LoggerConfig::printFactory);
+    static final LoggerConfigFeature<Boolean> ENABLE_CONF = new LoggerConfigFeature<>(Snapshot::enable);
+    static final LoggerConfigFeature<Level> LEVEL_CONF = new LoggerConfigFeature<>(Snapshot::level);
+    static final LoggerConfigFeature<PrintFactory> PRINTFACTORY_CONF = new LoggerConfigFeature<>(Snapshot::printFactory);
+    static final LoggerConfigFeature<RateLimit> RATELIMIT_CONF = new LoggerConfigFeature<>(Snapshot::rateLimit);
+    static final LoggerConfigFeature<Boolean> METRICS_CONF = new LoggerConfigFeature<>(Snapshot::metrics);
+    static final LoggerConfigFeature<FlightRecorder> FLIGHTRECORDER_CONF = new LoggerConfigFeature<>(Snapshot::flightRecorder);
     
-    private final Function<LoggerConfigImpl, Optional<T>> extractor;
+    private final Function<Snapshot, T> extractor;  // returns null if the value is not defined
     
-    private LoggerConfigFeature(Function<LoggerConfigImpl, Optional<T>> extractor) {
+    private LoggerConfigFeature(Function<Snapshot, T> extractor) {
       this.extractor = extractor;
     }
     
+    // only the switch points of the configurations up to the one that defines the value are collected,
+    // the value and its switch point come from the same snapshot, so no lock is needed
     Optional<T> findValueAndCollectSwitchPoints(Class<?> type, Set<SwitchPoint> switchPoints) {
-      for(LoggerConfigKind kind: LoggerConfigKind.VALUES) {
-        String name = kind.extractNameFromClass(type);
-        LoggerConfigImpl loggerConfig = configFrom(kind, name);
-        switchPoints.add(loggerConfig.switchPoint());
-        Optional<T> value = extractor.apply(loggerConfig);
-        if (value.isPresent()) {
-          return value;
+      for(LoggerConfigImpl loggerConfig: CONFIG_CHAINS.get(type)) {
+        Snapshot snapshot = loggerConfig.snapshot;
+        switchPoints.add(snapshot.switchPoint);
+        T value = extractor.apply(snapshot);
+        if (value != null) {
+          return Optional.of(value);
         }
       }
       return Optional.empty();
@@ -340,96 +718,222 @@ class LoggerImpl {
   }
   
   static class LoggerConfigImpl implements LoggerConfig {
-    class ConfigOptionImpl implements ConfigOption {
+    // record the options, the values are only written into the config when the update is committed
+    static class ConfigOptionImpl implements ConfigOption {
+      private Boolean enable;  // nullable
+      private Level level;    // nullable
+      private PrintFactory printFactory;  // nullable
+      private RateLimit rateLimit;  // nullable
+      private Boolean metrics;  // nullable
+      private FlightRecorder flightRecorder;  // nullable
+      
       @Override
       public ConfigOption enable(boolean enable) {
-        LoggerConfigImpl.this.enable = enable;
+        this.enable = enable;
         return this;
       } 
       @Override
       public ConfigOption level(Level level) {
-        LoggerConfigImpl.this.level = Objects.requireNonNull(level);
+        this.level = Objects.requireNonNull(level);
         return this;
       }
       @Override
       public ConfigOption printFactory(PrintFactory printFactory) {
-        LoggerConfigImpl.this.printFactory = Objects.requireNonNull(printFactory);
+        this.printFactory = Objects.requireNonNull(printFactory);
+        return this;
+      }
+      @Override
+      public ConfigOption rateLimit(Level level, long permitsPerSecond, int burst) {
+        this.rateLimit = new RateLimit(level, permitsPerSecond, burst);
+        return this;
+      }
+      @Override
+      public ConfigOption metrics(boolean metrics) {
+        this.metrics = metrics;
+        return this;
+      }
+      @Override
+      public ConfigOption flightRecorder(int capacity) {
+        this.flightRecorder = new FlightRecorder(capacity, null);
+        return this;
+      }
+      @Override
+      public ConfigOption flightRecorder(int capacity, Duration maxAge) {
+        this.flightRecorder = new FlightRecorder(capacity, Objects.requireNonNull(maxAge, "maxAge is null"));
         return this;
       }
+      
+      // the options override the values of the snapshot
+      Snapshot commitTo(Snapshot snapshot, SwitchPoint switchPoint) {
+        return new Snapshot(
+            (enable != null)? enable: snapshot.enable,
+            (level != null)? level: snapshot.level,
+            (printFactory != null)? printFactory: snapshot.printFactory,
+            (rateLimit != null)? rateLimit: snapshot.rateLimit,
+            (metrics != null)? metrics: snapshot.metrics,
+            (flightRecorder != null)? flightRecorder: snapshot.flightRecorder,
+            switchPoint);
+      }
     }
     
-    private final Object lock = new Object();
-    private SwitchPoint switchPoint;
+    // the values of a configuration (all nullable) and the switch point that is invalidated when they change,
+    // each update publishes a new snapshot, so a reader sees consistent values without taking a lock
+    record Snapshot(Boolean enable, Level level, PrintFactory printFactory, RateLimit rateLimit,
+                    Boolean metrics, FlightRecorder flightRecorder, SwitchPoint switchPoint) {}
     
-    volatile Boolean enable; // nullable
-    volatile Level level;    // nullable
-    volatile PrintFactory printFactory;  // nullable
-
-    LoggerConfigImpl() {
-      synchronized(lock) {
-        this.switchPoint = new SwitchPoint();
-      }
-    }
+    // one lock for all the writers, so a batch is atomic with respect to the other updates,
+    // the readers never take it. It's not a monitor, so an update does not pin a virtual thread
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    
+    volatile Snapshot snapshot = new Snapshot(null, null, null, null, null, null, new SwitchPoint());
 
     @Override
     public Optional<Boolean> enable() {
-      return Optional.ofNullable(enable);
+      return Optional.ofNullable(snapshot.enable);
     }
     @Override
     public Optional<Level> level() {
-      return Optional.ofNullable(level);
+      return Optional.ofNullable(snapshot.level);
     }
     @Override
     public Optional<PrintFactory> printFactory() {
-      return Optional.ofNullable(printFactory);
+      return Optional.ofNullable(snapshot.printFactory);
     }
-    
-    SwitchPoint switchPoint() {
-      synchronized (lock) {
-        return switchPoint;  
-      }
+    @Override
+    public Optional<RateLimit> rateLimit() {
+      return Optional.ofNullable(snapshot.rateLimit);
+    }
+    @Override
+    public Optional<Boolean> metrics() {
+      return Optional.ofNullable(snapshot.metrics);
+    }
+    @Override
+    public Optional<FlightRecorder> flightRecorder() {
+      return Optional.ofNullable(snapshot.flightRecorder);
     }
     
     @Override
     public LoggerConfig update(Consumer<? super ConfigOption> configUpdater) {
-      synchronized(lock) {
-        configUpdater.accept(new ConfigOptionImpl());
-        SwitchPoint.invalidateAll(new SwitchPoint[] { switchPoint });
-        switchPoint = new SwitchPoint();
-      }
+      ConfigOptionImpl option = new ConfigOptionImpl();
+      configUpdater.accept(option);
+      commit(Map.of(this, option));
       return this;
     }
+    
+    // publish the snapshots of all configurations then invalidate all the old switch points at once,
+    // a call site that has read an old snapshot is guarded by an old switch point, so it relinks
+    static void commit(Map<LoggerConfigImpl, ConfigOptionImpl> updates) {
+      SwitchPoint[] switchPoints = new SwitchPoint[updates.size()];
+      int index = 0;
+      Object event = JfrEvents.beginInvalidation();  // null if no recording is running
+      LOCK.lock();
+      try {
+        for(Entry<LoggerConfigImpl, ConfigOptionImpl> update: updates.entrySet()) {
+          LoggerConfigImpl config = update.getKey();
+          Snapshot snapshot = config.snapshot;
+          switchPoints[index++] = snapshot.switchPoint;
+          config.snapshot = update.getValue().commitTo(snapshot, new SwitchPoint());
+        }
+        SwitchPoint.invalidateAll(switchPoints);
+      } finally {
+        LOCK.unlock();
+      }
+      JfrEvents.commitInvalidation(event, switchPoints.length);
+    }
   }
   
-  private final static ConcurrentHashMap<String, LoggerConfigImpl> CONFIG =
+  static void batch(Consumer<? super Batch> batchUpdater) {
+    Objects.requireNonNull(batchUpdater, "batchUpdater is null");
+    LinkedHashMap<LoggerConfigImpl, ConfigOptionImpl> updates = new LinkedHashMap<>();
+    batchUpdater.accept(new Batch() {
+      @Override
+      public Batch update(LoggerConfig config, Consumer<? super ConfigOption> configUpdater) {
+        Objects.requireNonNull(config, "config is null");
+        if (!(config instanceof LoggerConfigImpl)) {
+          throw new IllegalArgumentException("unknown logger config " + config);
+        }
+        configUpdater.accept(updates.computeIfAbsent((LoggerConfigImpl)config, __ -> new ConfigOptionImpl()));
+        return this;
+      }
+    });
+    if (!updates.isEmpty()) {
+      LoggerConfigImpl.commit(updates);
+    }
+  }
+  
+  private final static ConcurrentHashMap<String, LoggerConfigImpl> CLASS_CONFIGS =
+      new ConcurrentHashMap<>();
+  private final static ConcurrentHashMap<String, LoggerConfigImpl> MODULE_CONFIGS =
       new ConcurrentHashMap<>();
   
-  static LoggerConfigImpl configFrom(LoggerConfigKind kind, String name) {
-    return CONFIG.computeIfAbsent(kind.key(name), __ ->  new LoggerConfigImpl());
+  // a trie of the package name segments, the root is the unnamed package
+  private static class PackageNode {
+    final LoggerConfigImpl config = new LoggerConfigImpl();
+    private final ConcurrentHashMap<String, PackageNode> children = new ConcurrentHashMap<>();
+    
+    PackageNode child(String segment) {
+      return children.computeIfAbsent(segment, __ -> new PackageNode());
+    }
   }
+  private static final PackageNode PACKAGE_ROOT = new PackageNode();
   
-  private static final MethodHandle LOGGER_FACTORY;
-  static {
-    String data = "yv66vgAAADUAWQEALGNvbS9naXRodWIvZm9yYXgvYmVhdXRpZnVsbG9nZ2VyL0xvZ2dlciRTdHViBwABAQAQamF2YS9sYW5nL09iamVjdAcAAwEAJ2NvbS9naXRodWIvZm9yYXgvYmVhdXRpZnVsbG9nZ2VyL0xvZ2dlcgcABQEAAm1oAQAfTGphdmEvbGFuZy9pbnZva2UvTWV0aG9kSGFuZGxlOwEABjxpbml0PgEAIihMamF2YS9sYW5nL2ludm9rZS9NZXRob2RIYW5kbGU7KVYBAAMoKVYMAAkACwoABAAMDAAHAAgJAAIADgEABmNyZWF0ZQEASihMamF2YS9sYW5nL2ludm9rZS9NZXRob2RIYW5kbGU7KUxjb20vZ2l0aHViL2ZvcmF4L2JlYXV0aWZ1bGxvZ2dlci9Mb2dnZXI7DAAJAAoKAAIAEgEABWVycm9yAQAqKExqYXZhL2xhbmcvU3RyaW5nO0xqYXZhL2xhbmcvVGhyb3dhYmxlOylWAQAkTGphdmEvbGFuZy9pbnZva2UvTGFtYmRhRm9ybSRIaWRkZW47AQAoTGpkay9pbnRlcm5hbC92bS9hbm5vdGF0aW9uL0ZvcmNlSW5saW5lOwEALWNvbS9naXRodWIvZm9yYXgvYmVhdXRpZnVsbG9nZ2VyL0xvZ2dlciRMZXZlbAcAGAEABUVSUk9SAQAvTGNvbS9naXRodWIvZm9yYXgvYmVhdXRpZnVsbG9nZ2VyL0xvZ2dlciRMZXZlbDsMABoAGwkAGQAcAQArY29tL2dpdGh1Yi9mb3JheC9iZWF1dGlmdWxsb2dnZXIvTG9nZ2VySW1wbAcAHgEABE5PTkUBABJMamF2YS9sYW5nL09iamVjdDsMACAAIQkAHwAiAQAdamF2YS9sYW5nL2ludm9rZS9NZXRob2RIYW5kbGUHACQBAAtpbnZva2VFeGFjdAEAoShMY29tL2dpdGh1Yi9mb3JheC9iZWF1dGlmdWxsb2dnZXIvTG9nZ2VyJExldmVsO0xqYXZhL2xhbmcvVGhyb3dhYmxlO0xqYXZhL2xhbmcvT2JqZWN0O0xqYXZhL2xhbmcvT2JqZWN0O0xqYXZhL2xhbmcvT2JqZWN0O0xqYXZhL2xhbmcvT2JqZWN0O0xqYXZhL2xhbmcvT2JqZWN0OylWDAAmACcKACUAKAEAIChMamF2YS91dGlsL2Z1bmN0aW9uL1N1cHBsaWVyOylWAQAyKExqYXZhL3V0aWwvZnVuY3Rpb24vRnVuY3Rpb247TGphdmEvbGFuZy9PYmplY3Q7KVYBACQoTGphdmEvdXRpbC9mdW5jdGlvbi9JbnRGdW5jdGlvbjtJKVYBABFqYXZhL2xhbmcvSW50ZWdlcgcALQEAB3ZhbHVlT2YBABYoSSlMamF2YS9sYW5nL0ludGVnZXI7DAAvADAKAC4AMQEAJShMamF2YS91dGlsL2Z1bmN0aW9uL0xvbmdGdW5jdGlvbjtKKVYBAA5qYXZhL2xhbmcvTG9uZwcANAEAEyhKKUxqYXZhL2xhbmcvTG9uZzsMAC8ANgoANQA3AQAnKExqYXZhL3V0aWwvZnVuY3Rpb24vRG91YmxlRnVuY3Rpb247RClWAQAQamF2YS9sYW5nL0RvdWJsZQcAOgEAFShEKUxqYXZhL2xhbmcvRG91YmxlOwwALwA8CgA7AD0BAEYoTGphdmEvdXRpbC9mdW5jdGlvbi9CaUZ1bmN0aW9uO0xqYXZhL2xhbmcvT2JqZWN0O0xqYXZhL2xhbmcvT2JqZWN0OylWAQAHd2FybmluZwEAB1dBUk5JTkcMAEEAGwkAGQBCAQAEaW5mbwEABElORk8MAEUAGwkAGQBGAQAFZGVidWcBAAVERUJVRwwASQAbCQAZAEoBAAV0cmFjZQEABVRSQUNFDABNABsJABkATgEABENvZGUBABlSdW50aW1lVmlzaWJsZUFubm90YXRpb25zAQAJU2lnbmF0dXJlAQA0KExqYXZhL3V0aWwvZnVuY3Rpb24vU3VwcGxpZXI8TGphdmEvbGFuZy9TdHJpbmc7PjspVgEAUTxUOkxqYXZhL2xhbmcvT2JqZWN0Oz4oTGphdmEvdXRpbC9mdW5jdGlvbi9GdW5jdGlvbjwtVFQ7TGphdmEvbGFuZy9TdHJpbmc7PjtUVDspVgEAOChMamF2YS91dGlsL2Z1bmN0aW9uL0ludEZ1bmN0aW9uPExqYXZhL2xhbmcvU3RyaW5nOz47SSlWAQA5KExqYXZhL3V0aWwvZnVuY3Rpb24vTG9uZ0Z1bmN0aW9uPExqYXZhL2xhbmcvU3RyaW5nOz47SilWAQA7KExqYXZhL3V0aWwvZnVuY3Rpb24vRG91YmxlRnVuY3Rpb248TGphdmEvbGFuZy9TdHJpbmc7PjtEKVYBAG48VDpMamF2YS9sYW5nL09iamVjdDtVOkxqYXZhL2xhbmcvT2JqZWN0Oz4oTGphdmEvdXRpbC9mdW5jdGlvbi9CaUZ1bmN0aW9uPC1UVDstVFU7TGphdmEvbGFuZy9TdHJpbmc7PjtUVDtUVTspVgAgAAIABAABAAYAAQASAAcACAAAACUAAgAJAAoAAQBQAAAAFgACAAIAAAAKKrcADSortQAPsQAAAAAACQAQABEAAQBQAAAAFQADAAEAAAAJuwACWSq3ABOwAAAAAAABABQAFQACAFAAAAAlAAgAAwAAABkqtAAPsgAdLCuyACOyACOyACOyACO2ACmxAAAAAABRAAAACgACABYAAAAXAAAAAQAUACoAAwBQAAAAJQAIAAIAAAAZKrQAD7IAHQErsgAjsgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAUwBRAAAACgACABYAAAAXAAAAAQAUACsAAwBQAAAAIwAIAAMAAAAXKrQAD7IAHQErLLIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFQAUQAAAAoAAgAWAAAAFwAAAAEAFAAsAAMAUAAAACYACAADAAAAGiq0AA+yAB0BKxy4ADKyACOyACOyACO2ACmxAAAAAABSAAAAAgBVAFEAAAAKAAIAFgAAABcAAAABABQAMwADAFAAAAAmAAgABAAAABoqtAAPsgAdASsguAA4sgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAVgBRAAAACgACABYAAAAXAAAAAQAUADkAAwBQAAAAJgAIAAQAAAAaKrQAD7IAHQErKLgAPrIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFcAUQAAAAoAAgAWAAAAFwAAAAEAFAA/AAMAUAAAACEACAAEAAAAFSq0AA+yAB0BKywtsgAjsgAjtgApsQAAAAAAUgAAAAIAWABRAAAACgACABYAAAAXAAAAAQBAABUAAgBQAAAAJQAIAAMAAAAZKrQAD7IAQywrsgAjsgAjsgAjsgAjtgApsQAAAAAAUQAAAAoAAgAWAAAAFwAAAAEAQAAqAAMAUAAAACUACAACAAAAGSq0AA+yAEMBK7IAI7IAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFMAUQAAAAoAAgAWAAAAFwAAAAEAQAArAAMAUAAAACMACAADAAAAFyq0AA+yAEMBKyyyACOyACOyACO2ACmxAAAAAABSAAAAAgBUAFEAAAAKAAIAFgAAABcAAAABAEAALAADAFAAAAAmAAgAAwAAABoqtAAPsgBDASscuAAysgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAVQBRAAAACgACABYAAAAXAAAAAQBAADMAAwBQAAAAJgAIAAQAAAAaKrQAD7IAQwErILgAOLIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFYAUQAAAAoAAgAWAAAAFwAAAAEAQAA5AAMAUAAAACYACAAEAAAAGiq0AA+yAEMBKyi4AD6yACOyACOyACO2ACmxAAAAAABSAAAAAgBXAFEAAAAKAAIAFgAAABcAAAABAEAAPwADAFAAAAAhAAgABAAAABUqtAAPsgBDASssLbIAI7IAI7YAKbEAAAAAAFIAAAACAFgAUQAAAAoAAgAWAAAAFwAAAAEARAAVAAIAUAAAACUACAADAAAAGSq0AA+yAEcsK7IAI7IAI7IAI7IAI7YAKbEAAAAAAFEAAAAKAAIAFgAAABcAAAABAEQAKgADAFAAAAAlAAgAAgAAABkqtAAPsgBHASuyACOyACOyACOyACO2ACmxAAAAAABSAAAAAgBTAFEAAAAKAAIAFgAAABcAAAABAEQAKwADAFAAAAAjAAgAAwAAABcqtAAPsgBHASsssgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAVABRAAAACgACABYAAAAXAAAAAQBEACwAAwBQAAAAJgAIAAMAAAAaKrQAD7IARwErHLgAMrIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFUAUQAAAAoAAgAWAAAAFwAAAAEARAAzAAMAUAAAACYACAAEAAAAGiq0AA+yAEcBKyC4ADiyACOyACOyACO2ACmxAAAAAABSAAAAAgBWAFEAAAAKAAIAFgAAABcAAAABAEQAOQADAFAAAAAmAAgABAAAABoqtAAPsgBHASsouAA+sgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAVwBRAAAACgACABYAAAAXAAAAAQBEAD8AAwBQAAAAIQAIAAQAAAAVKrQAD7IARwErLC2yACOyACO2ACmxAAAAAABSAAAAAgBYAFEAAAAKAAIAFgAAABcAAAABAEgAFQACAFAAAAAlAAgAAwAAABkqtAAPsgBLLCuyACOyACOyACOyACO2ACmxAAAAAABRAAAACgACABYAAAAXAAAAAQBIACoAAwBQAAAAJQAIAAIAAAAZKrQAD7IASwErsgAjsgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAUwBRAAAACgACABYAAAAXAAAAAQBIACsAAwBQAAAAIwAIAAMAAAAXKrQAD7IASwErLLIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFQAUQAAAAoAAgAWAAAAFwAAAAEASAAsAAMAUAAAACYACAADAAAAGiq0AA+yAEsBKxy4ADKyACOyACOyACO2ACmxAAAAAABSAAAAAgBVAFEAAAAKAAIAFgAAABcAAAABAEgAMwADAFAAAAAmAAgABAAAABoqtAAPsgBLASsguAA4sgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAVgBRAAAACgACABYAAAAXAAAAAQBIADkAAwBQAAAAJgAIAAQAAAAaKrQAD7IASwErKLgAPrIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFcAUQAAAAoAAgAWAAAAFwAAAAEASAA/AAMAUAAAACEACAAEAAAAFSq0AA+yAEsBKywtsgAjsgAjtgApsQAAAAAAUgAAAAIAWABRAAAACgACABYAAAAXAAAAAQBMABUAAgBQAAAAJQAIAAMAAAAZKrQAD7IATywrsgAjsgAjsgAjsgAjtgApsQAAAAAAUQAAAAoAAgAWAAAAFwAAAAEATAAqAAMAUAAAACUACAACAAAAGSq0AA+yAE8BK7IAI7IAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFMAUQAAAAoAAgAWAAAAFwAAAAEATAArAAMAUAAAACMACAADAAAAFyq0AA+yAE8BKyyyACOyACOyACO2ACmxAAAAAABSAAAAAgBUAFEAAAAKAAIAFgAAABcAAAABAEwALAADAFAAAAAmAAgAAwAAABoqtAAPsgBPASscuAAysgAjsgAjsgAjtgApsQAAAAAAUgAAAAIAVQBRAAAACgACABYAAAAXAAAAAQBMADMAAwBQAAAAJgAIAAQAAAAaKrQAD7IATwErILgAOLIAI7IAI7IAI7YAKbEAAAAAAFIAAAACAFYAUQAAAAoAAgAWAAAAFwAAAAEATAA5AAMAUAAAACYACAAEAAAAGiq0AA+yAE8BKyi4AD6yACOyACOyACO2ACmxAAAAAABSAAAAAgBXAFEAAAAKAAIAFgAAABcAAAABAEwAPwADAFAAAAAhAAgABAAAABUqtAAPsgBPASssLbIAI7IAI7YAKbEAAAAAAFIAAAACAFgAUQAAAAoAAgAWAAAAFwAAAAA=";
-    byte[] array = Base64.getDecoder().decode(data);
-    
-    Lookup lookup = MethodHandles.lookup();
-    try {
-      Field field = Unsafe.class.getDeclaredField("theUnsafe");
-      field.setAccessible(true);
-      Unsafe unsafe = (Unsafe)field.get(null);
-      Class<?> loggerClass = unsafe.defineAnonymousClass(Logger.class, array, null);
-      LOGGER_FACTORY = lookup.findStatic(loggerClass, "create", methodType(Logger.class, MethodHandle.class));
-    } catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException e) {
-      throw new AssertionError(e);
+  // the configurations of a package and of its parent packages, from the innermost to the outermost
+  private static ArrayList<LoggerConfigImpl> packageConfigs(String packageName) {
+    ArrayList<LoggerConfigImpl> configs = new ArrayList<>();
+    if (packageName.isEmpty()) {
+      configs.add(PACKAGE_ROOT.config);
+      return configs;
+    }
+    PackageNode node = PACKAGE_ROOT;
+    int start = 0;
+    for(;;) {
+      int end = packageName.indexOf('.', start);
+      node = node.child(packageName.substring(start, end == -1? packageName.length(): end));
+      configs.add(node.config);
+      if (end == -1) {
+        break;
+      }
+      start = end + 1;
     }
+    Collections.reverse(configs);
+    return configs;
   }
   
-  static Logger createLogger(MethodHandle mh) {
-    try {
-      return (Logger)LOGGER_FACTORY.invokeExact(mh);
-    } catch (Throwable e) {
-      throw rethrow(e);
+  static LoggerConfigImpl configFrom(LoggerConfigKind kind, String name) {
+    switch(kind) {
+    case CLASS:
+      return CLASS_CONFIGS.computeIfAbsent(name, __ -> new LoggerConfigImpl());
+    case PACKAGE:
+      return packageConfigs(name).get(0);
+    case MODULE:  // the unnamed module has no name
+      return MODULE_CONFIGS.computeIfAbsent(String.valueOf(name), __ -> new LoggerConfigImpl());
+    default:
+      throw new AssertionError("unknown kind " + kind);
     }
   }
+  
+  // the configurations that apply to a class, in resolution order:
+  // the class, its package, the parent packages and the module
+  private static final ClassValue<LoggerConfigImpl[]> CONFIG_CHAINS = new ClassValue<>() {
+    @Override
+    protected LoggerConfigImpl[] computeValue(Class<?> type) {
+      ArrayList<LoggerConfigImpl> chain = new ArrayList<>();
+      chain.add(configFrom(LoggerConfigKind.CLASS, type.getName()));
+      chain.addAll(packageConfigs(type.getPackageName()));
+      chain.add(configFrom(LoggerConfigKind.MODULE, type.getModule().getName()));
+      return chain.toArray(new LoggerConfigImpl[0]);
+    }
+  };
+  
+  static Logger createLogger(Class<?> configClass) {
+    // one call site by shape, the primitive ones avoid boxing
+    MethodHandle mh = getLoggingMethodHandle(configClass, 4);
+    MethodHandle mhInt = getLoggingMethodHandle(configClass, methodType(void.class, Level.class, Throwable.class, Object.class, int.class));
+    MethodHandle mhLong = getLoggingMethodHandle(configClass, methodType(void.class, Level.class, Throwable.class, Object.class, long.class));
+    MethodHandle mhDouble = getLoggingMethodHandle(configClass, methodType(void.class, Level.class, Throwable.class, Object.class, double.class));
+    MethodHandle mhObjInt = getLoggingMethodHandle(configClass, methodType(void.class, Level.class, Throwable.class, Object.class, Object.class, int.class));
+    MethodHandle mhObjLong = getLoggingMethodHandle(configClass, methodType(void.class, Level.class, Throwable.class, Object.class, Object.class, long.class));
+    MethodHandle mhObjDouble = getLoggingMethodHandle(configClass, methodType(void.class, Level.class, Throwable.class, Object.class, Object.class, double.class));
+    return new LoggerStub(mh, mhInt, mhLong, mhDouble, mhObjInt, mhObjLong, mhObjDouble);
+  }
 }
@@ -0,0 +1,124 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.MetricsMXBean;
+
+// The counters of the events by config class name and by level.
+// The counters are striped (LongAdder) because they are incremented by all the threads that log,
+// a call site only inserts the increments in its method handle tree if the option metrics is set,
+// so a logger without this option stays empty when it is disabled.
+// The counters are published as a platform MBean the first time this class is used,
+// if the module java.management is available.
+class LoggerMetrics implements MetricsMXBean {
+  static final MethodHandle INCREMENT;
+  static {
+    try {
+      INCREMENT = lookup().findStatic(LoggerMetrics.class, "increment", methodType(void.class, LongAdder[].class, Level.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static final String OBJECT_NAME = "com.github.forax.beautifullogger:type=Metrics";
+
+  static final LoggerMetrics INSTANCE = new LoggerMetrics();
+  static {
+    // java.management is an optional dependency
+    if (ModuleLayer.boot().findModule("java.management").isPresent()) {
+      PlatformMBean.register(INSTANCE);
+    }
+  }
+
+  // only loaded if java.management is available
+  private static class PlatformMBean {
+    static void register(LoggerMetrics metrics) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+      } catch (JMException e) {
+        // already registered by another copy of the library, the counters are still available
+        // using LoggerConfig.eventMetrics()
+      }
+    }
+  }
+
+  // the counters of a config class, indexed by level
+  static class Counters {
+    final LongAdder[] emitted = newCounters();
+    final LongAdder[] levelSuppressed = newCounters();
+    final LongAdder[] disableSuppressed = newCounters();
+
+    private static LongAdder[] newCounters() {
+      LongAdder[] counters = new LongAdder[Level.LEVELS.length];
+      for(int i = 0; i < counters.length; i++) {
+        counters[i] = new LongAdder();
+      }
+      return counters;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Counters> countersMap = new ConcurrentHashMap<>();
+
+  private LoggerMetrics() {
+    // singleton
+  }
+
+  static Counters counters(String name) {
+    return INSTANCE.countersMap.computeIfAbsent(name, __ -> new Counters());
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private static void increment(LongAdder[] counters, Level level) {
+    counters[level.ordinal()].increment();
+  }
+
+  private Map<String, Map<Level, Long>> snapshot(Function<Counters, LongAdder[]> extractor) {
+    return countersMap.entrySet().stream()
+        .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> {
+          LongAdder[] counters = extractor.apply(entry.getValue());
+          EnumMap<Level, Long> map = new EnumMap<>(Level.class);
+          for(Level level: Level.LEVELS) {
+            map.put(level, counters[level.ordinal()].sum());
+          }
+          return map;
+        }));
+  }
+
+  @Override
+  public Map<String, Map<Level, Long>> getEmittedEvents() {
+    return snapshot(counters -> counters.emitted);
+  }
+  @Override
+  public Map<String, Map<Level, Long>> getLevelSuppressedEvents() {
+    return snapshot(counters -> counters.levelSuppressed);
+  }
+  @Override
+  public Map<String, Map<Level, Long>> getDisableSuppressedEvents() {
+    return snapshot(counters -> counters.disableSuppressed);
+  }
+
+  @Override
+  public void reset() {
+    for(Counters counters: countersMap.values()) {
+      for(LongAdder[] adders: new LongAdder[][] { counters.emitted, counters.levelSuppressed, counters.disableSuppressed }) {
+        for(LongAdder adder: adders) {
+          adder.reset();
+        }
+      }
+    }
+  }
+}
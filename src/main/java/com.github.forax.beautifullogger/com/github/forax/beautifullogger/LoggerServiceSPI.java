@@ -1,6 +1,7 @@
 package com.github.forax.beautifullogger;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.UndeclaredThrowableException;
 
 public class LoggerServiceSPI {
@@ -15,6 +16,12 @@ public class LoggerServiceSPI {
     return LoggerImpl.getLoggingMethodHandle(configurationClass, maxParameter);
   }
   
+  // the type must be (Level, Throwable, Object, parameterTypes...)void,
+  // primitive parameter types are not boxed
+  public static MethodHandle getLoggingMethodHandle(Class<?> configurationClass, MethodType type) {
+    return LoggerImpl.getLoggingMethodHandle(configurationClass, type);
+  }
+  
   public static UndeclaredThrowableException rethrow(Throwable e) {
     return LoggerImpl.rethrow(e);
   }
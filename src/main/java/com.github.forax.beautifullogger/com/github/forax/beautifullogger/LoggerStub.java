@@ -0,0 +1,612 @@
+package com.github.forax.beautifullogger;
+
+import java.lang.invoke.MethodHandle;
+import java.util.function.BiFunction;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import com.github.forax.beautifullogger.Logger.Level;
+
+// GENERATED by com.github.forax.beautifullogger.tool.LoggerGenerator, DO NOT EDIT
+// one method handle by call site shape, the primitive ones avoid boxing
+record LoggerStub(MethodHandle mh, MethodHandle mhInt, MethodHandle mhLong, MethodHandle mhDouble,
+                  MethodHandle mhObjInt, MethodHandle mhObjLong, MethodHandle mhObjDouble) implements Logger {
+  private static final Object NONE = LoggerImpl.NONE;
+  
+  @Override
+  public void error(String message, Throwable context) {
+    try {
+      mh.invokeExact(Level.ERROR, context, (Object)message, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void error(Supplier<String> messageProvider) {
+    try {
+      mh.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void error(Function<? super T, String> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void error(IntFunction<String> messageProvider, int arg0) {
+    try {
+      mhInt.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void error(LongFunction<String> messageProvider, long arg0) {
+    try {
+      mhLong.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void error(DoubleFunction<String> messageProvider, double arg0) {
+    try {
+      mhDouble.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U> void error(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1) {
+    try {
+      mh.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V> void error(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2) {
+    try {
+      mh.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V, W> void error(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3) {
+    try {
+      mh.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, (Object)arg3);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void errorInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1) {
+    try {
+      mhObjInt.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void errorLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1) {
+    try {
+      mhObjLong.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void errorDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1) {
+    try {
+      mhObjDouble.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void error(MessageAppender<? super T> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.ERROR, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void warning(String message, Throwable context) {
+    try {
+      mh.invokeExact(Level.WARNING, context, (Object)message, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void warning(Supplier<String> messageProvider) {
+    try {
+      mh.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void warning(Function<? super T, String> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void warning(IntFunction<String> messageProvider, int arg0) {
+    try {
+      mhInt.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void warning(LongFunction<String> messageProvider, long arg0) {
+    try {
+      mhLong.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void warning(DoubleFunction<String> messageProvider, double arg0) {
+    try {
+      mhDouble.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U> void warning(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1) {
+    try {
+      mh.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V> void warning(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2) {
+    try {
+      mh.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V, W> void warning(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3) {
+    try {
+      mh.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, (Object)arg3);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void warningInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1) {
+    try {
+      mhObjInt.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void warningLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1) {
+    try {
+      mhObjLong.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void warningDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1) {
+    try {
+      mhObjDouble.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void warning(MessageAppender<? super T> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.WARNING, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void info(String message, Throwable context) {
+    try {
+      mh.invokeExact(Level.INFO, context, (Object)message, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void info(Supplier<String> messageProvider) {
+    try {
+      mh.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void info(Function<? super T, String> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void info(IntFunction<String> messageProvider, int arg0) {
+    try {
+      mhInt.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void info(LongFunction<String> messageProvider, long arg0) {
+    try {
+      mhLong.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void info(DoubleFunction<String> messageProvider, double arg0) {
+    try {
+      mhDouble.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U> void info(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1) {
+    try {
+      mh.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V> void info(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2) {
+    try {
+      mh.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V, W> void info(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3) {
+    try {
+      mh.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, (Object)arg3);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void infoInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1) {
+    try {
+      mhObjInt.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void infoLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1) {
+    try {
+      mhObjLong.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void infoDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1) {
+    try {
+      mhObjDouble.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void info(MessageAppender<? super T> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.INFO, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void debug(String message, Throwable context) {
+    try {
+      mh.invokeExact(Level.DEBUG, context, (Object)message, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void debug(Supplier<String> messageProvider) {
+    try {
+      mh.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void debug(Function<? super T, String> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void debug(IntFunction<String> messageProvider, int arg0) {
+    try {
+      mhInt.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void debug(LongFunction<String> messageProvider, long arg0) {
+    try {
+      mhLong.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void debug(DoubleFunction<String> messageProvider, double arg0) {
+    try {
+      mhDouble.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U> void debug(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1) {
+    try {
+      mh.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V> void debug(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2) {
+    try {
+      mh.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V, W> void debug(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3) {
+    try {
+      mh.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, (Object)arg3);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void debugInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1) {
+    try {
+      mhObjInt.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void debugLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1) {
+    try {
+      mhObjLong.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void debugDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1) {
+    try {
+      mhObjDouble.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void debug(MessageAppender<? super T> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.DEBUG, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void trace(String message, Throwable context) {
+    try {
+      mh.invokeExact(Level.TRACE, context, (Object)message, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void trace(Supplier<String> messageProvider) {
+    try {
+      mh.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, NONE, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void trace(Function<? super T, String> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void trace(IntFunction<String> messageProvider, int arg0) {
+    try {
+      mhInt.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void trace(LongFunction<String> messageProvider, long arg0) {
+    try {
+      mhLong.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void trace(DoubleFunction<String> messageProvider, double arg0) {
+    try {
+      mhDouble.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, arg0);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U> void trace(BiFunction<? super T, ? super U, String> messageProvider, T arg0, U arg1) {
+    try {
+      mh.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V> void trace(TriFunction<? super T, ? super U, ? super V, String> messageProvider, T arg0, U arg1, V arg2) {
+    try {
+      mh.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T, U, V, W> void trace(QuadFunction<? super T, ? super U, ? super V, ? super W, String> messageProvider, T arg0, U arg1, V arg2, W arg3) {
+    try {
+      mh.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, (Object)arg1, (Object)arg2, (Object)arg3);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void traceInt(ObjIntFunction<? super T, String> messageProvider, T arg0, int arg1) {
+    try {
+      mhObjInt.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void traceLong(ObjLongFunction<? super T, String> messageProvider, T arg0, long arg1) {
+    try {
+      mhObjLong.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void traceDouble(ObjDoubleFunction<? super T, String> messageProvider, T arg0, double arg1) {
+    try {
+      mhObjDouble.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, arg1);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public <T> void trace(MessageAppender<? super T> messageProvider, T arg0) {
+    try {
+      mh.invokeExact(Level.TRACE, (Throwable)null, (Object)messageProvider, (Object)arg0, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+  
+  @Override
+  public void event(Level level, String event, Fields fields) {
+    try {
+      mh.invokeExact(level, (Throwable)null, (Object)fields, (Object)event, NONE, NONE, NONE);
+    } catch (Throwable e) {
+      throw LoggerImpl.rethrow(e);
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.MappedFilePrintFactory;
+
+// Append bytes to a file through a sequence of memory mapped regions.
+// Writers claim space in the current region using an atomic cursor, a writer
+// that overflows the region maps the next region under a lock, or waits for
+// the writer that maps it. If the mapping fails, the event is lost and the next
+// writer that overflows retries.
+// The unused end of a region is left filled with zeroes, a record bigger than
+// the region size is written in a region big enough to contain it.
+// close() seals the current region, waits for the writers that claimed space in it,
+// forces it to the disk and truncates the file after the last record.
+class MappedFileAppender implements MappedFilePrintFactory {
+  private static final MethodHandle PRINT;
+  static {
+    try {
+      PRINT = lookup().findVirtual(MappedFileAppender.class, "print",
+          methodType(void.class, String.class, String.class, Level.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // added to the cursor by close(), so any new claim overflows
+  private static final long SEALED = Long.MAX_VALUE / 2;
+
+  private static class Region {
+    final long offset;
+    final int size;
+    final MappedByteBuffer buffer;
+    final AtomicLong cursor = new AtomicLong();
+    final AtomicLong written = new AtomicLong();  // including the unused end
+
+    Region(long offset, int size, MappedByteBuffer buffer) {
+      this.offset = offset;
+      this.size = size;
+      this.buffer = buffer;
+    }
+  }
+
+  private final FileChannel channel;
+  private final int regionSize;
+  private volatile Region region;
+  private final ReentrantLock lock = new ReentrantLock();
+  private boolean closed;  // guarded by lock
+
+  MappedFileAppender(Path path, long regionSize) throws IOException {
+    Objects.requireNonNull(path, "path is null");
+    if (regionSize <= 0 || regionSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("invalid region size " + regionSize);
+    }
+    this.regionSize = (int)regionSize;
+    FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+    this.channel = channel;
+
+    // never overwrite existing data
+    this.region = map(channel.size(), this.regionSize);
+  }
+
+  private Region map(long offset, int size) throws IOException {
+    return new Region(offset, size, channel.map(MapMode.READ_WRITE, offset, size));
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT.bindTo(this), 0, configClass.getName());
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void print(String name, String message, Level level, Throwable context) {
+    byte[] data = LogLines.format(System.currentTimeMillis(), name, message, level, context).getBytes(UTF_8);
+    append(data, 0, data.length);
+  }
+
+  void append(byte[] data, int offset, int length) {
+    // a record can not span two regions
+    for(;;) {
+      Region region = this.region;
+      long start = region.cursor.getAndAdd(length);
+      long end = start + length;
+      if (end <= region.size) {
+        region.buffer.put((int)start, data, offset, length);
+        region.written.addAndGet(length);
+        return;
+      }
+      if (start < region.size) {
+        // this writer claimed the unused end of the region
+        region.written.addAndGet(region.size - start);
+      }
+      roll(region, length);
+    }
+  }
+
+  private void roll(Region region, int length) {
+    lock.lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("mapped file closed");
+      }
+      if (this.region != region) {
+        return;  // another writer already mapped the next region
+      }
+      this.region = map(region.offset + region.size, Math.max(regionSize, length));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);  // the region is not replaced, the next writer retries
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void flush() {
+    region.buffer.force();
+    try {
+      channel.force(false);  // the pages of the previous regions
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      Region region = this.region;
+      long used = Math.min(region.cursor.getAndAdd(SEALED), region.size);
+      while (region.written.get() != used) {
+        Thread.onSpinWait();  // a writer is writing its record
+      }
+      try {
+        region.buffer.force();
+        channel.truncate(region.offset + used);
+        channel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
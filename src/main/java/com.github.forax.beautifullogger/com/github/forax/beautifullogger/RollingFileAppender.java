@@ -0,0 +1,333 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.RollingFilePrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.RollingPolicy;
+
+// Write the events in segments named path.1, path.2, etc.
+// A writer reserves its range in the current segment with a CAS and writes it with a positional write,
+// so the writers do not block each other.
+// When the current segment is too big or too old, one writer replaces it by the next segment,
+// already opened by a background thread, with a single volatile write. The old segment is sealed,
+// so no new range can be reserved in it, and it is closed and compressed by another background thread
+// when all the reserved ranges are written.
+// A writer rotates before reserving its range if the current segment is too old,
+// so an event is never written in a segment older than the policy allows.
+// close() seals the current segment, retires it like a rotated one, deletes the segment opened
+// in advance and waits until the background threads are done.
+class RollingFileAppender implements RollingFilePrintFactory {
+  private static final MethodHandle PRINT;
+  static {
+    try {
+      PRINT = lookup().findVirtual(RollingFileAppender.class, "print",
+          methodType(void.class, String.class, String.class, Level.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final long SEALED = Long.MIN_VALUE;
+
+  private static final class Segment {
+    private final Path path;
+    private final long index;
+    private final FileChannel channel;
+    private final AtomicLong reserved = new AtomicLong();  // or SEALED | size
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicBoolean retired = new AtomicBoolean();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();  // closed and compressed
+    private long deadlineMillis;  // written before the segment is published
+
+    Segment(Path path, long index) throws IOException {
+      this.path = path;
+      this.index = index;
+      this.channel = FileChannel.open(path, CREATE_NEW, WRITE);
+    }
+
+    // returns the position of the range or -1 if the segment is sealed
+    long reserve(int length) {
+      for(;;) {
+        long reserved = this.reserved.get();
+        if (reserved < 0) {
+          return -1;
+        }
+        if (this.reserved.compareAndSet(reserved, reserved + length)) {
+          return reserved;
+        }
+      }
+    }
+
+    void seal() {
+      for(;;) {
+        long reserved = this.reserved.get();
+        if (this.reserved.compareAndSet(reserved, reserved | SEALED)) {
+          return;
+        }
+      }
+    }
+
+    // returns true only once, when the segment is sealed and all the reserved ranges are written
+    boolean isComplete() {
+      long reserved = this.reserved.get();
+      return reserved < 0 && written.get() == (reserved & ~SEALED) && retired.compareAndSet(false, true);
+    }
+  }
+
+  private final Path path;
+  private final long maxBytes;
+  private final long maxAgeMillis;
+  private final boolean compress;
+  private final ExecutorService opener = Executors.newSingleThreadExecutor(daemonThreadFactory("beautiful-logger-rolling-open"));
+  private final ExecutorService compressor = Executors.newSingleThreadExecutor(daemonThreadFactory("beautiful-logger-rolling-compress"));
+
+  private volatile Segment current;
+  private CompletableFuture<Segment> next;  // guarded by rotating
+  private final AtomicBoolean rotating = new AtomicBoolean();
+  private volatile boolean closed;  // guarded by rotating when set
+
+  RollingFileAppender(Path path, RollingPolicy policy) throws IOException {
+    Objects.requireNonNull(path, "path is null");
+    Objects.requireNonNull(policy, "policy is null");
+    this.path = path;
+    this.maxBytes = policy.maxBytes;
+    this.maxAgeMillis = policy.maxAgeMillis;
+    this.compress = policy.compress;
+
+    long index = lastIndex(path) + 1;
+    Segment segment = new Segment(segmentPath(path, index), index);
+    segment.deadlineMillis = deadline(System.currentTimeMillis());
+    current = segment;
+    next = openAsync(segment.index + 1);
+  }
+
+  private static ThreadFactory daemonThreadFactory(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static Path segmentPath(Path path, long index) {
+    return path.resolveSibling(path.getFileName() + "." + index);
+  }
+
+  // the index of the last segment, compressed or not, of a previous run
+  private static long lastIndex(Path path) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    String prefix = path.getFileName() + ".";
+    try(Stream<Path> stream = Files.list(directory)) {
+      return stream
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(prefix))
+          .map(name -> name.substring(prefix.length()))
+          .map(suffix -> suffix.endsWith(".gz")? suffix.substring(0, suffix.length() - ".gz".length()): suffix)
+          .filter(suffix -> !suffix.isEmpty() && suffix.chars().allMatch(c -> c >= '0' && c <= '9'))
+          .mapToLong(Long::parseLong)
+          .max()
+          .orElse(0);
+    }
+  }
+
+  private long deadline(long nowMillis) {
+    return nowMillis + Math.min(maxAgeMillis, Long.MAX_VALUE - nowMillis);
+  }
+
+  private CompletableFuture<Segment> openAsync(long index) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return new Segment(segmentPath(path, index), index);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, opener);
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    return insertArguments(PRINT.bindTo(this), 0, configClass.getName());
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private void print(String name, String message, Level level, Throwable context) {
+    long now = System.currentTimeMillis();
+    byte[] bytes = LogLines.format(now, name, message, level, context).getBytes(UTF_8);
+    Segment segment;
+    long position;
+    for(;;) {
+      segment = current;
+      if (now >= segment.deadlineMillis && !closed) {
+        rotate(segment, now);  // the segment is too old, rotate before writing
+        continue;
+      }
+      position = segment.reserve(bytes.length);
+      if (position != -1) {
+        break;
+      }
+      if (closed) {
+        throw new IllegalStateException("rolling file closed");
+      }
+      Thread.onSpinWait();  // the segment is sealed, the next one is being published
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        segment.channel.write(buffer, position + buffer.position());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      segment.written.addAndGet(bytes.length);
+      if (segment.isComplete()) {
+        retire(segment);
+      }
+    }
+    if (position + bytes.length >= maxBytes) {
+      rotate(segment, now);
+    }
+  }
+
+  private void rotate(Segment segment, long now) {
+    if (!rotating.compareAndSet(false, true)) {
+      return;  // another writer rotates
+    }
+    try {
+      if (current != segment || closed) {
+        return;  // already rotated or closed
+      }
+      Segment nextSegment;
+      try {
+        nextSegment = next.join();  // usually already opened
+      } catch (CompletionException e) {
+        next = openAsync(segment.index + 1);  // retry at the next rotation
+        throw (e.getCause() instanceof UncheckedIOException)? (UncheckedIOException)e.getCause(): e;
+      }
+      nextSegment.deadlineMillis = deadline(now);
+      segment.seal();
+      current = nextSegment;
+      next = openAsync(nextSegment.index + 1);
+      if (segment.isComplete()) {
+        retire(segment);
+      }
+    } finally {
+      rotating.set(false);
+    }
+  }
+
+  @Override
+  public void close() {
+    while (!rotating.compareAndSet(false, true)) {
+      Thread.onSpinWait();  // a writer rotates
+    }
+    Segment segment;
+    CompletableFuture<Segment> next;
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      segment = current;
+      segment.seal();
+      next = this.next;
+    } finally {
+      rotating.set(false);
+    }
+    if (segment.isComplete()) {
+      retire(segment);
+    }
+
+    // the next segment was opened in advance, it is empty
+    try {
+      Segment nextSegment = next.join();
+      nextSegment.channel.close();
+      Files.delete(nextSegment.path);
+    } catch (CompletionException e) {
+      // the next segment was not created
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      // the writers of the current segment finish, then the compressor closes it
+      segment.done.join();
+      awaitTermination(opener);
+      awaitTermination(compressor);
+    }
+  }
+
+  private static void awaitTermination(ExecutorService executor) {
+    executor.shutdown();
+    boolean interrupted = false;
+    for(;;) {
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void retire(Segment segment) {
+    Runnable task = () -> {
+      try {
+        segment.channel.close();
+        if (compress) {
+          compress(segment.path);
+        }
+      } catch (IOException | RuntimeException e) {
+        // the compressor thread must survive to a failing segment
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      } finally {
+        segment.done.complete(null);
+      }
+    };
+    try {
+      compressor.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.run();  // the appender is closed and an old segment is complete, retire it in the writer
+    }
+  }
+
+  // the compressed file is written under a temporary name, so a .gz file is always complete
+  private static void compress(Path path) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".gz.tmp");
+    try(InputStream input = Files.newInputStream(path);
+        OutputStream output = new GZIPOutputStream(Files.newOutputStream(temporary), 1 << 16)) {
+      input.transferTo(output);
+    }
+    Files.move(temporary, path.resolveSibling(path.getFileName() + ".gz"));
+    Files.delete(path);
+  }
+}
@@ -0,0 +1,69 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.empty;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
+import com.github.forax.beautifullogger.LoggerImpl.EventFilterPrintFactory;
+import com.github.forax.beautifullogger.LoggerImpl.FilteredPrintFactory;
+
+// Send each event to all the sinks in order, the sinks are combined in one method handle.
+// The guards of a sink are applied to the sink only, an event filter is called with the message
+// instead of the message provider, so deduplicate() inside a tee compares the messages.
+// The message provider is not called if all the sinks are switched off from the outside.
+class TeePrintFactory implements FilteredPrintFactory {
+  private final List<PrintFactory> sinks;
+
+  TeePrintFactory(List<PrintFactory> sinks) {
+    this.sinks = sinks;
+  }
+
+  @Override
+  public MethodHandle getPrintMethodHandle(Class<?> configClass) {
+    MethodHandle target = null;
+    for(int i = sinks.size(); --i >= 0;) {
+      MethodHandle print = sinkPrint(sinks.get(i), configClass);
+      target = (target == null)? print: foldArguments(target, print);
+    }
+    return target;
+  }
+
+  private static MethodHandle sinkPrint(PrintFactory sink, Class<?> configClass) {
+    MethodHandle print = sink.getPrintMethodHandle(configClass).asType(AsyncPrintFactoryImpl.PRINT_TYPE);
+    MethodHandle empty = empty(AsyncPrintFactoryImpl.PRINT_TYPE);
+    if (sink instanceof EventFilterPrintFactory) {
+      // (Level, Throwable, Object)boolean -> (String, Level, Throwable)boolean
+      MethodHandle accept = ((EventFilterPrintFactory)sink).getEventFilterMethodHandle(configClass);
+      MethodHandle test = permuteArguments(
+          accept.asType(accept.type().changeParameterType(2, String.class)),
+          AsyncPrintFactoryImpl.PRINT_TYPE.changeReturnType(boolean.class), 1, 2, 0);
+      print = guardWithTest(test, print, empty);
+    }
+    if (sink instanceof FilteredPrintFactory) {
+      MethodHandle isEnabled = ((FilteredPrintFactory)sink).getIsEnabledMethodHandle(configClass);
+      print = guardWithTest(dropArguments(isEnabled, 0, AsyncPrintFactoryImpl.PRINT_TYPE.parameterList()), print, empty);
+    }
+    return print;
+  }
+
+  @Override
+  public MethodHandle getIsEnabledMethodHandle(Class<?> configClass) {
+    MethodHandle isEnabled = null;
+    for(int i = sinks.size(); --i >= 0;) {
+      PrintFactory sink = sinks.get(i);
+      if (!(sink instanceof FilteredPrintFactory)) {
+        return constant(boolean.class, true);
+      }
+      MethodHandle sinkIsEnabled = ((FilteredPrintFactory)sink).getIsEnabledMethodHandle(configClass);
+      isEnabled = (isEnabled == null)? sinkIsEnabled: guardWithTest(sinkIsEnabled, constant(boolean.class, true), isEnabled);
+    }
+    return isEnabled;
+  }
+}
@@ -0,0 +1,123 @@
+package com.github.forax.beautifullogger;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.RateLimit;
+
+// A lock-free token bucket implemented as a generic cell rate algorithm,
+// the only state is the theoretical arrival time (tat) of the next event,
+// an event is accepted if the tat is not more than burst intervals in the future.
+// A rejected event only reads the tat and increments the suppressed counter,
+// an accepted event does one CAS on the tat.
+// The suppressed counts of all buckets are reported every second by a daemon thread.
+// There is one bucket by config class and rate limit, shared by all the call sites of the config class
+// and kept when the call sites are re-linked, see RateLimit.bucket().
+class TokenBucket {
+  static final MethodHandle TRY_ACQUIRE;
+  private static final VarHandle TAT;
+  static {
+    MethodHandles.Lookup lookup = lookup();
+    try {
+      TRY_ACQUIRE = lookup.findVirtual(TokenBucket.class, "tryAcquire", methodType(boolean.class, Level.class));
+      TAT = lookup.findVarHandle(TokenBucket.class, "tat", long.class);
+    } catch (NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final long SUMMARY_PERIOD_MILLIS = 1_000;
+
+  // the reporter does not keep the buckets alive, a bucket is dropped with its rate limit
+  private static class Reporter {
+    static final ConcurrentLinkedQueue<WeakReference<TokenBucket>> BUCKETS = new ConcurrentLinkedQueue<>();
+    static {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "beautiful-logger-rate-limit");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.scheduleAtFixedRate(Reporter::report, SUMMARY_PERIOD_MILLIS, SUMMARY_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void report() {
+      BUCKETS.removeIf(reference -> {
+        TokenBucket bucket = reference.get();
+        if (bucket == null) {
+          return true;
+        }
+        bucket.reportSuppressed();
+        return false;
+      });
+    }
+  }
+
+  private final Level level;
+  private final long interval;
+  private final long tolerance;
+  private volatile MethodHandle print;  // the one of the last linked call site
+  private final LongAdder suppressed = new LongAdder();
+
+  @SuppressWarnings("unused")  // used by a VarHandle
+  private volatile long tat;
+
+  TokenBucket(Level level, long permitsPerSecond, int burst) {
+    this.level = level;
+    this.interval = Math.max(1, TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    this.tolerance = interval * burst;
+    this.tat = System.nanoTime();
+    Reporter.BUCKETS.add(new WeakReference<>(this));
+  }
+
+  // the print factory may have changed since the last link
+  void print(MethodHandle print) {
+    this.print = print.asType(AsyncPrintFactoryImpl.PRINT_TYPE);
+  }
+
+  @SuppressWarnings("unused")  // called by a method handle
+  private boolean tryAcquire(Level level) {
+    if (level.compareTo(this.level) > 0) {
+      return true;
+    }
+    for(;;) {
+      long now = System.nanoTime();
+      long tat = (long)TAT.getVolatile(this);
+      long newTat = Math.max(tat, now) + interval;
+      if (newTat - now > tolerance) {
+        suppressed.increment();
+        return false;
+      }
+      if (TAT.compareAndSet(this, tat, newTat)) {
+        return true;
+      }
+    }
+  }
+
+  private void reportSuppressed() {
+    MethodHandle print = this.print;
+    if (print == null) {
+      return;  // not yet linked
+    }
+    long count = suppressed.sumThenReset();
+    if (count == 0) {
+      return;
+    }
+    try {
+      print.invokeExact("rate limit: " + count + " events suppressed", level, (Throwable)null);
+    } catch (Throwable t) {
+      // the reporter thread must survive to a failing printer
+      Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+  }
+}
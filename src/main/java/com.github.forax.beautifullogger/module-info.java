@@ -1,5 +1,7 @@
 module com.github.forax.beautifullogger {
-  exports com.github.forax.beautifullogger;
+  requires static java.management;
+  requires static jdk.jfr;
+  requires static java.logging;
   
-  requires jdk.unsupported;
+  exports com.github.forax.beautifullogger;
 }
@@ -0,0 +1,39 @@
+package com.github.forax.beautifullogger.perf;
+
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+// a java.util.logging backend that sends the log records to a blackhole,
+// so the benchmarks measure the cost of the logging path and not the cost of an I/O
+class JULSink {
+  private JULSink() {
+    throw new AssertionError();
+  }
+  
+  static Blackhole blackhole;
+  
+  // java.util.logging only keeps weak references on the loggers
+  private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(JULSink.class.getName());
+  static {
+    LOGGER.setUseParentHandlers(false);
+    LOGGER.setLevel(java.util.logging.Level.ALL);
+    LOGGER.addHandler(new Handler() {
+      @Override
+      public void publish(LogRecord record) {
+        blackhole.consume(record);
+      }
+      @Override
+      public void flush() {
+        // empty
+      }
+      @Override
+      public void close() {
+        // empty
+      }
+    });
+  }
+  
+  static final String NAME = LOGGER.getName();
+}
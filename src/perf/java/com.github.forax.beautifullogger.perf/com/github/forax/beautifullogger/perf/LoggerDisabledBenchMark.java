@@ -0,0 +1,85 @@
+package com.github.forax.beautifullogger.perf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.forax.beautifullogger.Logger;
+import com.github.forax.beautifullogger.Logger.Level;
+
+// the cost of a call to a logger that does nothing, should be the same as noOp
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LoggerDisabledBenchMark {
+  private static class Disabled { /* empty */ }
+  private static class Filtered { /* empty */ }
+  private static class Counted { /* empty */ }
+  private static class Recorded { /* empty */ }
+  
+  private static final Logger DISABLED_LOGGER = Logger.getLogger(Disabled.class, opt -> opt.enable(false));
+  private static final Logger FILTERED_LOGGER = Logger.getLogger(Filtered.class, opt -> opt.level(Level.INFO));
+  // the suppressed events are counted
+  private static final Logger COUNTED_LOGGER = Logger.getLogger(Counted.class, opt -> opt.level(Level.INFO).metrics(true));
+  // the suppressed events are recorded in the ring of the current thread
+  private static final Logger RECORDED_LOGGER = Logger.getLogger(Recorded.class, opt -> opt.level(Level.INFO).flightRecorder(1_024));
+  
+  // baseline, a System.Logger with the default backend (java.util.logging, level INFO)
+  private static final System.Logger SYSTEM_LOGGER = System.getLogger(LoggerDisabledBenchMark.class.getName());
+  
+  @Benchmark
+  public void noOp() {
+    // empty
+  }
+  
+  @Benchmark
+  public void disabledSupplier() {
+    DISABLED_LOGGER.error(() -> "message");
+  }
+  
+  @Benchmark
+  public void disabledIntFunction() {
+    DISABLED_LOGGER.error((int value) -> "message " + value, 42);
+  }
+  
+  @Benchmark
+  public void levelFilteredSupplier() {
+    FILTERED_LOGGER.debug(() -> "message");
+  }
+  
+  @Benchmark
+  public void levelFilteredBiFunction() {
+    FILTERED_LOGGER.debug((String a, String b) -> a + b, "foo", "bar");
+  }
+  
+  @Benchmark
+  public void levelFilteredWithMetricsSupplier() {
+    COUNTED_LOGGER.debug(() -> "message");
+  }
+  
+  @Benchmark
+  public void levelFilteredWithFlightRecorderSupplier() {
+    RECORDED_LOGGER.debug(() -> "message");
+  }
+  
+  @Benchmark
+  public void levelFilteredWithFlightRecorderIntFunction() {
+    RECORDED_LOGGER.debug((int value) -> "message " + value, 42);
+  }
+  
+  @Benchmark
+  public void systemLoggerLevelFiltered() {
+    SYSTEM_LOGGER.log(System.Logger.Level.DEBUG, () -> "message");
+  }
+}
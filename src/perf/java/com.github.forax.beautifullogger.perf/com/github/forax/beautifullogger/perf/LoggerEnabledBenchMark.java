@@ -0,0 +1,208 @@
+package com.github.forax.beautifullogger.perf;
+
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.atLevel;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.channel;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.charSequencePrinter;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.json;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.printer;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.systemLogger;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.tee;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.forax.beautifullogger.Logger;
+import com.github.forax.beautifullogger.Logger.Level;
+
+// the cost of an enabled logger for each kind of message provider,
+// and the cost of the System.Logger print factory compared to a plain System.Logger
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LoggerEnabledBenchMark {
+  private static class Printer { /* empty */ }
+  private static class CharSequencePrinter { /* empty */ }
+  private static class Json { /* empty */ }
+  private static class Channel { /* empty */ }
+  private static class Tee { /* empty */ }
+  
+  static Blackhole blackhole;
+  
+  private static final Logger PRINTER_LOGGER = Logger.getLogger(Printer.class,
+      opt -> opt.printFactory(printer((message, level, context) -> blackhole.consume(message))));
+  
+  private static final Logger CHAR_SEQUENCE_PRINTER_LOGGER = Logger.getLogger(CharSequencePrinter.class,
+      opt -> opt.printFactory(charSequencePrinter((message, level, context) -> blackhole.consume(message))));
+  
+  // the second sink only receives the errors
+  private static final Logger TEE_LOGGER = Logger.getLogger(Tee.class,
+      opt -> opt.printFactory(tee(
+          printer((message, level, context) -> blackhole.consume(message)),
+          atLevel(Level.ERROR, printer((message, level, context) -> blackhole.consume(level))))));
+  
+  // JULSink is the config class, so the System.Logger is the one of the JULSink
+  private static final Logger SYSTEM_LOGGER_LOGGER = Logger.getLogger(JULSink.class,
+      opt -> opt.printFactory(systemLogger()));
+  
+  private static final Logger JSON_LOGGER = Logger.getLogger(Json.class,
+      opt -> opt.printFactory(json(new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+          blackhole.consume(buffer);
+        }
+        @Override
+        public void flush() { /* empty */ }
+        @Override
+        public void close() { /* empty */ }
+      })));
+  
+  private static final Logger CHANNEL_LOGGER = Logger.getLogger(Channel.class,
+      opt -> opt.printFactory(channel(new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer buffer) {
+          int remaining = buffer.remaining();
+          blackhole.consume(buffer.get(buffer.limit() - 1));
+          buffer.position(buffer.limit());
+          return remaining;
+        }
+        @Override
+        public boolean isOpen() {
+          return true;
+        }
+        @Override
+        public void close() { /* empty */ }
+      })));
+  
+  // baseline
+  private static final System.Logger SYSTEM_LOGGER = System.getLogger(JULSink.NAME);
+  
+  private static final Throwable THROWABLE = new Throwable();
+  
+  private int value = 123_456;
+  private long longValue = 123_456_789_000L;
+  private double doubleValue = 1.5;
+  private String text = "foo";
+  
+  @Setup
+  public void setup(Blackhole blackhole) {
+    LoggerEnabledBenchMark.blackhole = blackhole;
+    JULSink.blackhole = blackhole;
+  }
+  
+  @Benchmark
+  public void printerStringAndThrowable() {
+    PRINTER_LOGGER.error("message", THROWABLE);
+  }
+  
+  @Benchmark
+  public void printerSupplier() {
+    PRINTER_LOGGER.error(() -> "message");
+  }
+  
+  @Benchmark
+  public void printerFunction() {
+    PRINTER_LOGGER.error((String s) -> s, text);
+  }
+  
+  @Benchmark
+  public void printerIntFunction() {
+    PRINTER_LOGGER.error((int v) -> "message", value);
+  }
+  
+  @Benchmark
+  public void printerLongFunction() {
+    PRINTER_LOGGER.error((long v) -> "message", longValue);
+  }
+  
+  @Benchmark
+  public void printerDoubleFunction() {
+    PRINTER_LOGGER.error((double v) -> "message", doubleValue);
+  }
+  
+  @Benchmark
+  public void printerBiFunction() {
+    PRINTER_LOGGER.error((String a, String b) -> a, text, text);
+  }
+  
+  @Benchmark
+  public void printerTriFunction() {
+    PRINTER_LOGGER.error((String a, String b, String c) -> a, text, text, text);
+  }
+  
+  @Benchmark
+  public void printerObjIntFunction() {
+    PRINTER_LOGGER.errorInt((String s, int v) -> s, text, value);
+  }
+  
+  @Benchmark
+  public void printerObjLongFunction() {
+    PRINTER_LOGGER.errorLong((String s, long v) -> s, text, longValue);
+  }
+  
+  @Benchmark
+  public void teeErrorSupplier() {
+    TEE_LOGGER.error(() -> "message");
+  }
+  
+  @Benchmark
+  public void teeWarningSupplier() {
+    TEE_LOGGER.warning(() -> "message");
+  }
+  
+  @Benchmark
+  public void printerMessageAppender() {
+    PRINTER_LOGGER.error((builder, s) -> builder.append("message ").append(s), text);
+  }
+  
+  @Benchmark
+  public void charSequencePrinterMessageAppender() {
+    CHAR_SEQUENCE_PRINTER_LOGGER.error((builder, s) -> builder.append("message ").append(s), text);
+  }
+  
+  @Benchmark
+  public void jsonEvent() {
+    JSON_LOGGER.event(Logger.Level.ERROR, "event", fields -> fields.field("value", value).field("double", doubleValue));
+  }
+  
+  @Benchmark
+  public void channelIntFunction() {
+    CHANNEL_LOGGER.error((int v) -> "message", value);
+  }
+  
+  @Benchmark
+  public void channelMessageAppender() {
+    CHANNEL_LOGGER.error((builder, s) -> builder.append("message ").append(s), text);
+  }
+  
+  @Benchmark
+  public void channelNonASCII() {
+    CHANNEL_LOGGER.error(() -> "d\u00e9j\u00e0 vu");
+  }
+  
+  @Benchmark
+  public void systemLoggerSupplier() {
+    SYSTEM_LOGGER_LOGGER.error(() -> "message");
+  }
+  
+  @Benchmark
+  public void plainSystemLoggerSupplier() {
+    SYSTEM_LOGGER.log(System.Logger.Level.ERROR, () -> "message");
+  }
+}
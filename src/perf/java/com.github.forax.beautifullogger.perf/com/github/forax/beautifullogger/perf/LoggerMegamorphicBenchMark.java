@@ -0,0 +1,70 @@
+package com.github.forax.beautifullogger.perf;
+
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.printer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.forax.beautifullogger.Logger;
+
+// the cost of a logger called with several message provider classes
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LoggerMegamorphicBenchMark {
+  private static class Monomorphic { /* empty */ }
+  private static class Megamorphic { /* empty */ }
+  
+  static Blackhole blackhole;
+  
+  private static final Logger MONOMORPHIC_LOGGER = Logger.getLogger(Monomorphic.class,
+      opt -> opt.printFactory(printer((message, level, context) -> blackhole.consume(message))));
+  private static final Logger MEGAMORPHIC_LOGGER = Logger.getLogger(Megamorphic.class,
+      opt -> opt.printFactory(printer((message, level, context) -> blackhole.consume(message))));
+  
+  // 16 different lambdas, so 16 different classes, more than the inlining cache can store
+  private static final Supplier<?>[] SUPPLIERS = {
+      () -> "message0", () -> "message1", () -> "message2", () -> "message3",
+      () -> "message4", () -> "message5", () -> "message6", () -> "message7",
+      () -> "message8", () -> "message9", () -> "message10", () -> "message11",
+      () -> "message12", () -> "message13", () -> "message14", () -> "message15"
+  };
+  
+  private int index;
+  
+  @Setup
+  public void setup(Blackhole blackhole) {
+    LoggerMegamorphicBenchMark.blackhole = blackhole;
+  }
+  
+  @SuppressWarnings("unchecked")
+  private Supplier<String> nextSupplier() {
+    return (Supplier<String>)SUPPLIERS[index++ & 15];
+  }
+  
+  @Benchmark
+  public void monomorphic() {
+    nextSupplier();  // same work as megamorphic
+    MONOMORPHIC_LOGGER.error(() -> "message");
+  }
+  
+  @Benchmark
+  public void megamorphic() {
+    MEGAMORPHIC_LOGGER.error(nextSupplier());
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.forax.beautifullogger.perf;
+
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.printer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.forax.beautifullogger.Logger;
+import com.github.forax.beautifullogger.LoggerConfig;
+
+// the steady state cost of a logger after its configuration was updated,
+// the configuration is toggled before each iteration
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LoggerReconfigurationBenchMark {
+  private static class Enabled { /* empty */ }
+  private static class Disabled { /* empty */ }
+  
+  static Blackhole blackhole;
+  
+  private static final Logger ENABLED_LOGGER = Logger.getLogger(Enabled.class,
+      opt -> opt.printFactory(printer((message, level, context) -> blackhole.consume(message))));
+  private static final Logger DISABLED_LOGGER = Logger.getLogger(Disabled.class,
+      opt -> opt.printFactory(printer((message, level, context) -> blackhole.consume(message))));
+  
+  private boolean toggle;
+  
+  @Setup
+  public void setup(Blackhole blackhole) {
+    LoggerReconfigurationBenchMark.blackhole = blackhole;
+  }
+  
+  @Setup(Level.Iteration)
+  public void toggle() {
+    toggle = !toggle;
+    // stay enabled, but the call site has to be re-linked
+    LoggerConfig.fromClass(Enabled.class).update(opt -> opt.level(toggle? Logger.Level.DEBUG: Logger.Level.INFO));
+    // stay disabled, but the call site has to be re-linked
+    LoggerConfig.fromClass(Disabled.class).update(opt -> opt.enable(false));
+  }
+  
+  @Benchmark
+  public void enabledAfterUpdate() {
+    ENABLED_LOGGER.error(() -> "message");
+  }
+  
+  @Benchmark
+  public void disabledAfterUpdate() {
+    DISABLED_LOGGER.error(() -> "message");
+  }
+}
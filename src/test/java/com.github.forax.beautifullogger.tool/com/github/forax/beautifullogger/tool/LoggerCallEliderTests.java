@@ -0,0 +1,270 @@
+package com.github.forax.beautifullogger.tool;
+
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.printer;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEDYNAMIC;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V17;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import com.github.forax.beautifullogger.Logger;
+import com.github.forax.beautifullogger.Logger.Level;
+
+@SuppressWarnings("static-method")
+class LoggerCallEliderTests {
+  private static final String LOGGER = "com/github/forax/beautifullogger/Logger";
+
+  // the classes rewritten by the tests, public because they are loaded by another class loader
+  public static class Samples {
+    public static int sideEffects;
+    public static int bootstraps;
+
+    public static void pure(Logger logger, int value) {
+      logger.debug(() -> "debug");
+      logger.trace((int v) -> "trace " + v, value);
+      logger.debug("debug " + value, null);
+      logger.debugInt((String s, int v) -> s + v, "debug ", value);
+      logger.info(() -> "info");
+    }
+
+    public static String sideEffect() {
+      sideEffects++;
+      return "side effect";
+    }
+
+    public static void sideEffectArgument(Logger logger) {
+      logger.debug(sideEffect(), null);
+      logger.info(() -> "info");
+    }
+
+    public static void ternaryArgument(Logger logger, boolean flag) {
+      logger.debug(flag? "yes": "no", null);
+      logger.info(flag? "yes": "no", null);
+    }
+
+    public static void loop(Logger logger, int count) {
+      for(int i = 0; i < count; i++) {
+        logger.debug((int v) -> "debug " + v, i);
+        logger.info((int v) -> "info " + v, i);
+      }
+    }
+
+    public static void staticFieldOfAnotherClass(Logger logger) {
+      logger.debug(Initialized.VALUE, null);
+    }
+
+    // bootstrap method of a dynamic constant
+    public static String message(Lookup lookup, String name, Class<?> type) {
+      bootstraps++;
+      return name;
+    }
+  }
+
+  public static class Initialized {
+    public static final String VALUE = String.valueOf(initialize());
+
+    private static boolean initialize() {
+      initialized = true;
+      return true;
+    }
+  }
+  static boolean initialized;
+
+  // the rewritten classes are defined by a new class loader, so they are verified
+  // the same way -Xverify:all verifies all the classes
+  private static final class RewrittenClassLoader extends ClassLoader {
+    RewrittenClassLoader() {
+      super(LoggerCallEliderTests.class.getClassLoader());
+    }
+
+    Class<?> define(byte[] code) {
+      String name = new ClassReader(code).getClassName().replace('/', '.');
+      Class<?> type = defineClass(name, code, 0, code.length);
+      resolveClass(type);
+      return type;
+    }
+  }
+
+  private static byte[] classFile(Class<?> type) throws IOException {
+    String name = type.getName();
+    try(InputStream input = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+      return input.readAllBytes();
+    }
+  }
+
+  private static MethodNode method(byte[] code, String name) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(code).accept(classNode, 0);
+    return classNode.methods.stream().filter(method -> method.name.equals(name)).findFirst().orElseThrow();
+  }
+
+  private static List<String> calls(MethodNode method) {
+    ArrayList<String> calls = new ArrayList<>();
+    for(AbstractInsnNode insn: method.instructions) {
+      if (insn instanceof MethodInsnNode) {
+        MethodInsnNode methodInsn = (MethodInsnNode)insn;
+        calls.add(methodInsn.owner.substring(methodInsn.owner.lastIndexOf('/') + 1) + "." + methodInsn.name);
+      }
+    }
+    return calls;
+  }
+
+  private static int indyCount(MethodNode method) {
+    int count = 0;
+    for(AbstractInsnNode insn: method.instructions) {
+      if (insn.getOpcode() == INVOKEDYNAMIC) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static Logger logger(List<String> messages) {
+    return Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, level, context) -> messages.add(message))));
+  }
+
+  private static Object run(Class<?> type, String name, Object... args) throws ReflectiveOperationException {
+    for(java.lang.reflect.Method method: type.getMethods()) {
+      if (method.getName().equals(name)) {
+        try {
+          return method.invoke(null, args);
+        } catch (InvocationTargetException e) {
+          throw new AssertionError(e.getCause());
+        }
+      }
+    }
+    throw new AssertionError("no method " + name);
+  }
+
+  @Test
+  void pureSequencesAreRemoved() throws IOException, ReflectiveOperationException {
+    byte[] code = classFile(Samples.class);
+    byte[] newCode = new LoggerCallElider(Set.of("trace", "debug")).rewrite(code);
+    assertNotSame(code, newCode);
+
+    MethodNode method = method(newCode, "pure");
+    assertAll(
+        () -> assertEquals(List.of("Logger.info"), calls(method)),
+        () -> assertEquals(1, indyCount(method)));  // the lambda of info
+
+    List<String> messages = new ArrayList<>();
+    run(new RewrittenClassLoader().define(newCode), "pure", logger(messages), 42);
+    assertEquals(List.of("info"), messages);
+  }
+
+  @Test
+  void sideEffectArgumentsAreKept() throws IOException, ReflectiveOperationException {
+    byte[] newCode = new LoggerCallElider(Set.of("trace", "debug")).rewrite(classFile(Samples.class));
+    assertEquals(List.of("LoggerCallEliderTests$Samples.sideEffect", "Logger.info"), calls(method(newCode, "sideEffectArgument")));
+
+    Class<?> type = new RewrittenClassLoader().define(newCode);
+    List<String> messages = new ArrayList<>();
+    run(type, "sideEffectArgument", logger(messages));
+    assertAll(
+        () -> assertEquals(1, type.getField("sideEffects").getInt(null)),
+        () -> assertEquals(List.of("info"), messages));
+  }
+
+  @Test
+  void ternaryArgumentsAreKept() throws IOException, ReflectiveOperationException {
+    byte[] newCode = new LoggerCallElider(Set.of("trace", "debug")).rewrite(classFile(Samples.class));
+    assertEquals(List.of("Logger.info"), calls(method(newCode, "ternaryArgument")));
+
+    Class<?> type = new RewrittenClassLoader().define(newCode);
+    List<String> messages = new ArrayList<>();
+    run(type, "ternaryArgument", logger(messages), true);
+    run(type, "ternaryArgument", logger(messages), false);
+    assertEquals(List.of("yes", "no"), messages);
+  }
+
+  @Test
+  void callsInALoopAreRemoved() throws IOException, ReflectiveOperationException {
+    byte[] newCode = new LoggerCallElider(Set.of("trace", "debug")).rewrite(classFile(Samples.class));
+    MethodNode method = method(newCode, "loop");
+    assertAll(
+        () -> assertEquals(List.of("Logger.info"), calls(method)),
+        () -> assertEquals(1, indyCount(method)));
+
+    List<String> messages = new ArrayList<>();
+    run(new RewrittenClassLoader().define(newCode), "loop", logger(messages), 3);
+    assertEquals(List.of("info 0", "info 1", "info 2"), messages);
+  }
+
+  @Test
+  void staticFieldOfAnotherClassIsKept() throws IOException, ReflectiveOperationException {
+    byte[] newCode = new LoggerCallElider(Set.of("trace", "debug")).rewrite(classFile(Samples.class));
+    assertEquals(List.of(), calls(method(newCode, "staticFieldOfAnotherClass")));
+
+    List<String> messages = new ArrayList<>();
+    run(new RewrittenClassLoader().define(newCode), "staticFieldOfAnotherClass", logger(messages));
+    assertAll(
+        () -> assertTrue(initialized),  // the static initializer of Initialized has run
+        () -> assertEquals(List.of(), messages));
+  }
+
+  @Test
+  void dynamicConstantIsKept() throws ReflectiveOperationException {
+    // javac does not generate dynamic constants, so the class is generated
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(V17, ACC_PUBLIC, "com/github/forax/beautifullogger/tool/DynamicConstant", null, "java/lang/Object", null);
+    MethodVisitor mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "(L" + LOGGER + ";)V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitLdcInsn(new ConstantDynamic("message", "Ljava/lang/String;",
+        new Handle(H_INVOKESTATIC, Type.getInternalName(Samples.class), "message",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/String;", false)));
+    mv.visitInsn(ACONST_NULL);
+    mv.visitMethodInsn(INVOKEINTERFACE, LOGGER, "debug", "(Ljava/lang/String;Ljava/lang/Throwable;)V", true);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    writer.visitEnd();
+
+    byte[] newCode = new LoggerCallElider(Set.of("trace", "debug")).rewrite(writer.toByteArray());
+    assertFalse(calls(method(newCode, "run")).contains("Logger.debug"));
+
+    int bootstraps = Samples.bootstraps;
+    List<String> messages = new ArrayList<>();
+    run(new RewrittenClassLoader().define(newCode), "run", logger(messages));
+    assertAll(
+        () -> assertEquals(bootstraps + 1, Samples.bootstraps),
+        () -> assertEquals(List.of(), messages));
+  }
+
+  @Test
+  void classWithoutRemovedCallsIsNotRewritten() throws IOException {
+    byte[] code = classFile(Initialized.class);
+    assertSame(code, new LoggerCallElider(Set.of("trace", "debug")).rewrite(code));
+  }
+}
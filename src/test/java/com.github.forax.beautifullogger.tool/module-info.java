@@ -0,0 +1,3 @@
+open module com.github.forax.beautifullogger.tool {
+  requires org.junit.jupiter.api;
+}
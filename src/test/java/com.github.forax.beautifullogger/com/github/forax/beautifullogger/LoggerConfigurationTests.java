@@ -2,16 +2,35 @@ package com.github.forax.beautifullogger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.printer;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+
 import org.junit.jupiter.api.Test;
 
 import com.github.forax.beautifullogger.Logger;
 import com.github.forax.beautifullogger.LoggerConfig;
 import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.MetricsMXBean;
+import com.github.forax.beautifullogger.LoggerDiagnostics.Dump;
+import com.github.forax.beautifullogger.LoggerDiagnostics.Stats;
 import com.github.forax.beautifullogger.LoggerConfig.Printer;
+import com.github.forax.beautifullogger.parentconfig.parent.child.ChildPackageClass;
 
 @SuppressWarnings("static-method")
 class LoggerConfigurationTests {
@@ -74,4 +93,266 @@ class LoggerConfigurationTests {
       }
     }
   }
+  
+  @Test
+  void loggerRateLimit() throws InterruptedException {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    int[] counts = new int[Level.LEVELS.length];
+    CountDownLatch summary = new CountDownLatch(1);
+    Logger logger = Logger.getLogger(clazz, opt -> opt
+        .rateLimit(Level.WARNING, 1, 10)
+        .printFactory(printer((message, level, context) -> {
+          if (message.startsWith("rate limit:")) {
+            assertTrue(message.matches("rate limit: 9[89][0-9] events suppressed"), message);
+            summary.countDown();
+            return;
+          }
+          counts[level.ordinal()]++;
+        })));
+    for(int i = 0; i < 1_000; i++) {
+      logger.warning(() -> "message");
+      logger.error(() -> "message");
+    }
+    assertTrue(counts[Level.WARNING.ordinal()] <= 11);
+    assertEquals(1_000, counts[Level.ERROR.ordinal()]);
+    assertTrue(summary.await(5, TimeUnit.SECONDS));
+  }
+  
+  @Test
+  void loggerRateLimitMessageProviderNotCalled() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(clazz, opt -> opt
+        .rateLimit(Level.ERROR, 1, 1)
+        .printFactory(printer((message, level, context) -> { /* empty */ })));
+    logger.error(() -> "message");
+    logger.error(() -> fail("the message provider should not be called"));
+  }
+  
+  @Test
+  void loggerRateLimitSharedByCallSitesAndRelinks() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    List<String> messages = new ArrayList<>();
+    Logger logger = Logger.getLogger(clazz, opt -> opt
+        .rateLimit(Level.ERROR, 1, 2)
+        .printFactory(printer((message, level, context) -> messages.add(message))));
+    logger.error(() -> "supplier");
+    logger.error((int value) -> "int " + value, 1);
+    LoggerConfig.fromClass(clazz).update(opt -> opt.level(Level.DEBUG));  // re-link, same rate limit
+    logger.error("string", null);
+    logger.error((long value) -> "long " + value, 2L);
+    assertEquals(List.of("supplier", "int 1"), messages);
+  }
+  
+  @Test
+  void loggerWithLevelOverride() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(clazz, opt -> opt
+        .level(Level.INFO)
+        .printFactory(printer((message, level, context) -> builder.append(message).append(';'))));
+    
+    logger.debug(() -> "before");
+    LoggerConfig.withLevel(Level.DEBUG, () -> {
+      logger.trace(() -> "trace");
+      logger.debug(() -> "debug");
+      LoggerConfig.withLevel(Level.TRACE, () -> logger.trace(() -> "nested"));
+      logger.trace(() -> "trace2");
+      
+      // other threads are not impacted
+      Thread thread = new Thread(() -> logger.debug(() -> "thread"));
+      thread.start();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+    });
+    logger.debug(() -> "after");
+    logger.info(() -> "info");
+    assertEquals("debug;nested;info;", builder.toString());
+  }
+  
+  @Test
+  void loggerBatchUpdate() {
+    Class<?> clazz1 = new Object() {/*empty*/}.getClass();
+    Class<?> clazz2 = new Object() {/*empty*/}.getClass();
+    StringBuilder builder = new StringBuilder();
+    Logger logger1 = Logger.getLogger(clazz1, opt -> opt.printFactory(printer((message, level, context) -> builder.append(message).append(';'))));
+    Logger logger2 = Logger.getLogger(clazz2, opt -> opt.printFactory(printer((message, level, context) -> builder.append(message).append(';'))));
+    
+    logger1.debug(() -> "debug1");
+    logger2.info(() -> "info2");
+    LoggerConfig.batch(batch -> batch
+        .update(LoggerConfig.fromClass(clazz1), opt -> opt.level(Level.DEBUG))
+        .update(LoggerConfig.fromClass(clazz2), opt -> opt.enable(false))
+        .update(LoggerConfig.fromClass(clazz1), opt -> opt.level(Level.TRACE)));
+    logger1.trace(() -> "trace1");
+    logger2.info(() -> "info2bis");
+    assertEquals("info2;trace1;", builder.toString());
+  }
+  
+  @Test
+  void loggerBatchUpdateFailure() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    assertThrows(IllegalStateException.class, () -> LoggerConfig.batch(batch -> {
+      batch.update(LoggerConfig.fromClass(clazz), opt -> opt.level(Level.TRACE));
+      throw new IllegalStateException();
+    }));
+    assertEquals(Optional.empty(), LoggerConfig.fromClass(clazz).level());
+  }
+  
+  @Test
+  void loggerParentPackageConfig() {
+    // use a class in packages owned by this test, so the package configurations do not impact the other tests
+    StringBuilder builder = new StringBuilder();
+    LoggerConfig.fromPackage("com.github.forax.beautifullogger.parentconfig.parent").update(opt -> opt.level(Level.TRACE));
+    Logger logger = Logger.getLogger(ChildPackageClass.class, opt -> opt.printFactory(printer((message, level, context) -> builder.append(message).append(';'))));
+    logger.trace(() -> "trace");
+    
+    LoggerConfig.fromPackage("com.github.forax.beautifullogger.parentconfig.parent.child").update(opt -> opt.level(Level.ERROR));
+    logger.warning(() -> "warning");
+    logger.error(() -> "error");
+    
+    LoggerConfig.fromPackage("com.github.forax.beautifullogger.parentconfig").update(opt -> opt.enable(false));
+    logger.error(() -> "error2");
+    assertEquals("trace;error;", builder.toString());
+  }
+  
+  @Test
+  void loggerMegamorphicMessageProviders() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(clazz, opt -> opt.printFactory(printer((message, level, context) -> builder.append(message))));
+    List<Supplier<String>> suppliers = List.of(
+        () -> "0", () -> "1", () -> "2", () -> "3", () -> "4", () -> "5",
+        () -> "6", () -> "7", () -> "8", () -> "9", () -> "a", () -> "b");
+    for(int i = 0; i < 2; i++) {
+      suppliers.forEach(logger::error);
+    }
+    assertEquals("0123456789ab0123456789ab", builder.toString());
+    assertEquals(1L, (long)LoggerConfig.megamorphicLoggers().get(clazz.getName()));
+  }
+  
+  @Test
+  void loggerMetrics() throws Exception {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(clazz, opt -> opt
+        .metrics(true)
+        .level(Level.INFO)
+        .printFactory(printer((message, level, context) -> { /* empty */ })));
+    for(int i = 0; i < 3; i++) {
+      logger.error(() -> "error");
+      logger.debug(() -> "debug");
+    }
+    LoggerConfig.fromClass(clazz).update(opt -> opt.enable(false));
+    logger.warning(() -> "warning");
+    
+    MetricsMXBean metrics = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+        new ObjectName("com.github.forax.beautifullogger:type=Metrics"), MetricsMXBean.class);
+    assertAll(
+        () -> assertEquals(3L, metrics.getEmittedEvents().get(clazz.getName()).get(Level.ERROR)),
+        () -> assertEquals(0L, metrics.getEmittedEvents().get(clazz.getName()).get(Level.DEBUG)),
+        () -> assertEquals(3L, metrics.getLevelSuppressedEvents().get(clazz.getName()).get(Level.DEBUG)),
+        () -> assertEquals(1L, metrics.getDisableSuppressedEvents().get(clazz.getName()).get(Level.WARNING)));
+  }
+  
+  @Test
+  void loggerWithoutMetrics() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(clazz, opt -> opt.printFactory(printer((message, level, context) -> { /* empty */ })));
+    logger.error(() -> "error");
+    Map<String, Map<Level, Long>> emitted = LoggerConfig.eventMetrics().getEmittedEvents();
+    assertNull(emitted.get(clazz.getName()));
+  }
+  
+  @Test
+  void loggerFlightRecorder() {
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.flightRecorder(3).printFactory(printer((message, level, context) -> builder.append(level).append(' ').append(message).append('\n'))));
+    logger.debug(() -> fail("overwritten by the next events"));
+    logger.trace("trace", null);
+    logger.debug((int value) -> "debug " + value, 42);
+    logger.debugDouble((String s, double value) -> s + value, "debug ", 2.5);
+    logger.info("info", null);
+    logger.error("error", null);
+    logger.error("error again", null);
+    assertEquals(
+        "INFO info\n" +
+        "TRACE trace\n" +
+        "DEBUG debug 42\n" +
+        "DEBUG debug 2.5\n" +
+        "ERROR error\n" +
+        "ERROR error again\n", builder.toString());
+  }
+  
+  @Test
+  void loggerFlightRecorderOnlyDumpsTheCurrentThread() throws InterruptedException {
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.flightRecorder(16).printFactory(printer((message, level, context) -> builder.append(message).append('\n'))));
+    Thread thread = new Thread(() -> logger.debug("other thread", null));
+    thread.start();
+    thread.join();
+    logger.debug("debug", null);
+    logger.error("error", null);
+    assertEquals("debug\nerror\n", builder.toString());
+  }
+  
+  @Test
+  void loggerFlightRecorderReleasesExpiredEvents() throws InterruptedException {
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.flightRecorder(16, Duration.ofMillis(50)).printFactory(printer((message, level, context) -> builder.append(message).append('\n'))));
+    logger.debug(() -> fail("expired"));
+    Thread.sleep(100);
+    logger.debug("debug", null);
+    logger.error("error", null);
+    assertEquals("debug\nerror\n", builder.toString());
+  }
+  
+  @Test
+  void loggerFlightRecorderMaxAgeMustBePositive() {
+    assertThrows(IllegalArgumentException.class,
+        () -> LoggerConfig.fromClass(new Object() {/*empty*/}.getClass()).update(opt -> opt.flightRecorder(16, Duration.ZERO)));
+  }
+  
+  @Test
+  void loggerDiagnostics() {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(clazz, opt -> opt.printFactory(printer((message, level, context) -> { /* empty */ })));
+    Supplier<String> supplier1 = () -> "error1";
+    Supplier<String> supplier2 = () -> "error2";
+    logger.error(supplier1);
+    logger.error(supplier2);
+    logger.error(supplier1);  // already linked
+    LoggerConfig.fromClass(clazz).update(opt -> opt.level(Level.DEBUG));
+    logger.error(supplier1);
+    
+    Stats stats = LoggerDiagnostics.stats().get(clazz.getName());
+    assertAll(
+        () -> assertEquals(2, stats.relinks()),
+        () -> assertEquals(3, stats.providerRelinks()),
+        () -> assertEquals(2, stats.maxInlineCacheDepth()),
+        () -> assertTrue(stats.switchPoints() >= 3),   // class, packages and module
+        () -> assertTrue(stats.relinkNanos() > 0));
+  }
+  
+  @Test
+  void loggerDiagnosticsDump() throws InterruptedException {
+    Class<?> clazz = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(clazz, opt -> opt.printFactory(printer((message, level, context) -> { /* empty */ })));
+    logger.error(() -> "error");
+    CountDownLatch latch = new CountDownLatch(1);
+    Dump dump = LoggerDiagnostics.dumpEvery(Duration.ofMillis(10), (message, level, context) -> {
+      if (message.startsWith("logger diagnostics " + clazz.getName() + ": relinks 1,")) {
+        latch.countDown();
+      }
+    });
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } finally {
+      dump.close();
+    }
+  }
 }
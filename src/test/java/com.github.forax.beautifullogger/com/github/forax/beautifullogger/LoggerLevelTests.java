@@ -15,6 +15,7 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -235,4 +236,148 @@ class LoggerLevelTests {
     consumer.accept(logger); 
     assertTrue(marked[0]);
   }
+  
+  private static Stream<Arguments> logTriFunctionAndLevelPairSource() {
+    List<Entry<Consumer<Logger>, Level>> list = List.of(
+        entry(l -> l.debug((a, b, c) -> a + b + c, "foo", "bar", "baz"),   Level.DEBUG),
+        entry(l -> l.error((a, b, c) -> a + b + c, "foo", "bar", "baz"),   Level.ERROR),
+        entry(l -> l.info((a, b, c) -> a + b + c, "foo", "bar", "baz"),    Level.INFO),
+        entry(l -> l.trace((a, b, c) -> a + b + c, "foo", "bar", "baz"),   Level.TRACE),
+        entry(l -> l.warning((a, b, c) -> a + b + c, "foo", "bar", "baz"), Level.WARNING));
+    return list.stream().map(e -> Arguments.of(e.getKey(), e.getValue()));
+  }
+  @ParameterizedTest
+  @MethodSource("logTriFunctionAndLevelPairSource")
+  void logTriFunctionAndLevelMatch(Consumer<Logger> consumer, Level level) {
+    boolean[] marked = { false };
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, loggerLevel, context) -> {
+          marked[0] = true;
+          assertAll(
+            () -> assertEquals(level, loggerLevel),
+            () -> assertEquals("foobarbaz", message),
+            () -> assertNull(context));
+        })));
+    consumer.accept(logger); 
+    assertTrue(marked[0]);
+  }
+  
+  private static Stream<Arguments> logQuadFunctionAndLevelPairSource() {
+    List<Entry<Consumer<Logger>, Level>> list = List.of(
+        entry(l -> l.debug((a, b, c, d) -> a + b + c + d, "foo", "bar", "baz", 42),   Level.DEBUG),
+        entry(l -> l.error((a, b, c, d) -> a + b + c + d, "foo", "bar", "baz", 42),   Level.ERROR),
+        entry(l -> l.info((a, b, c, d) -> a + b + c + d, "foo", "bar", "baz", 42),    Level.INFO),
+        entry(l -> l.trace((a, b, c, d) -> a + b + c + d, "foo", "bar", "baz", 42),   Level.TRACE),
+        entry(l -> l.warning((a, b, c, d) -> a + b + c + d, "foo", "bar", "baz", 42), Level.WARNING));
+    return list.stream().map(e -> Arguments.of(e.getKey(), e.getValue()));
+  }
+  @ParameterizedTest
+  @MethodSource("logQuadFunctionAndLevelPairSource")
+  void logQuadFunctionAndLevelMatch(Consumer<Logger> consumer, Level level) {
+    boolean[] marked = { false };
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, loggerLevel, context) -> {
+          marked[0] = true;
+          assertAll(
+            () -> assertEquals(level, loggerLevel),
+            () -> assertEquals("foobarbaz42", message),
+            () -> assertNull(context));
+        })));
+    consumer.accept(logger); 
+    assertTrue(marked[0]);
+  }
+  
+  private static Stream<Arguments> logObjIntFunctionAndLevelPairSource() {
+    List<Entry<Consumer<Logger>, Level>> list = List.of(
+        entry(l -> l.debugInt((String a, int b) -> a + b, "foo", 42),   Level.DEBUG),
+        entry(l -> l.errorInt((String a, int b) -> a + b, "foo", 42),   Level.ERROR),
+        entry(l -> l.infoInt((String a, int b) -> a + b, "foo", 42),    Level.INFO),
+        entry(l -> l.traceInt((String a, int b) -> a + b, "foo", 42),   Level.TRACE),
+        entry(l -> l.warningInt((String a, int b) -> a + b, "foo", 42), Level.WARNING));
+    return list.stream().map(e -> Arguments.of(e.getKey(), e.getValue()));
+  }
+  @ParameterizedTest
+  @MethodSource("logObjIntFunctionAndLevelPairSource")
+  void logObjIntFunctionAndLevelMatch(Consumer<Logger> consumer, Level level) {
+    boolean[] marked = { false };
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, loggerLevel, context) -> {
+          marked[0] = true;
+          assertAll(
+            () -> assertEquals(level, loggerLevel),
+            () -> assertEquals("foo42", message),
+            () -> assertNull(context));
+        })));
+    consumer.accept(logger); 
+    assertTrue(marked[0]);
+  }
+  
+  private static Stream<Arguments> logObjLongFunctionAndLevelPairSource() {
+    List<Entry<Consumer<Logger>, Level>> list = List.of(
+        entry(l -> l.debugLong((String a, long b) -> a + b, "foo", 42L),   Level.DEBUG),
+        entry(l -> l.errorLong((String a, long b) -> a + b, "foo", 42L),   Level.ERROR),
+        entry(l -> l.infoLong((String a, long b) -> a + b, "foo", 42L),    Level.INFO),
+        entry(l -> l.traceLong((String a, long b) -> a + b, "foo", 42L),   Level.TRACE),
+        entry(l -> l.warningLong((String a, long b) -> a + b, "foo", 42L), Level.WARNING));
+    return list.stream().map(e -> Arguments.of(e.getKey(), e.getValue()));
+  }
+  @ParameterizedTest
+  @MethodSource("logObjLongFunctionAndLevelPairSource")
+  void logObjLongFunctionAndLevelMatch(Consumer<Logger> consumer, Level level) {
+    boolean[] marked = { false };
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, loggerLevel, context) -> {
+          marked[0] = true;
+          assertAll(
+            () -> assertEquals(level, loggerLevel),
+            () -> assertEquals("foo42", message),
+            () -> assertNull(context));
+        })));
+    consumer.accept(logger); 
+    assertTrue(marked[0]);
+  }
+  
+  private static Stream<Arguments> logObjDoubleFunctionAndLevelPairSource() {
+    List<Entry<Consumer<Logger>, Level>> list = List.of(
+        entry(l -> l.debugDouble((String a, double b) -> a + b, "foo", 4.2),   Level.DEBUG),
+        entry(l -> l.errorDouble((String a, double b) -> a + b, "foo", 4.2),   Level.ERROR),
+        entry(l -> l.infoDouble((String a, double b) -> a + b, "foo", 4.2),    Level.INFO),
+        entry(l -> l.traceDouble((String a, double b) -> a + b, "foo", 4.2),   Level.TRACE),
+        entry(l -> l.warningDouble((String a, double b) -> a + b, "foo", 4.2), Level.WARNING));
+    return list.stream().map(e -> Arguments.of(e.getKey(), e.getValue()));
+  }
+  @ParameterizedTest
+  @MethodSource("logObjDoubleFunctionAndLevelPairSource")
+  void logObjDoubleFunctionAndLevelMatch(Consumer<Logger> consumer, Level level) {
+    boolean[] marked = { false };
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, loggerLevel, context) -> {
+          marked[0] = true;
+          assertAll(
+            () -> assertEquals(level, loggerLevel),
+            () -> assertEquals("foo4.2", message),
+            () -> assertNull(context));
+        })));
+    consumer.accept(logger); 
+    assertTrue(marked[0]);
+  }
+  
+  @Test
+  void implicitlyTypedBiFunctionWithAPrimitiveArgument() {
+    // must compile, a lambda with implicit parameter types and a primitive argument is a BiFunction
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.TRACE).printFactory(printer((message, loggerLevel, context) -> builder.append(message).append(';'))));
+    logger.debug((a, b) -> a + " " + b, "foo", 42);
+    logger.debug((a, b) -> a + " " + b, "foo", 42L);
+    logger.debug((a, b) -> a + " " + b, "foo", 4.2);
+    logger.debug((a, b) -> a + " " + b.getClass().getSimpleName(), "foo", 42);  // the argument is boxed
+    assertEquals("foo 42;foo 42;foo 4.2;foo Integer;", builder.toString());
+  }
 }
@@ -10,9 +10,11 @@ import com.github.forax.beautifullogger.LoggerConfig;
 import com.github.forax.beautifullogger.LoggerServiceSPI;
 import com.github.forax.beautifullogger.Logger.Level;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.security.Principal;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.LongFunction;
 import org.junit.jupiter.api.Test;
 
 @SuppressWarnings("static-method")
@@ -121,4 +123,39 @@ class LoggerServiceSPITests {
     service.unauthorized(People.amy, "invalid password");
     assertTrue(called2[0]);
   }
+  
+  interface LatencyLoggerService {
+    void log(Level level, Throwable context, Object messageProvider, long value);
+    
+    default void latency(long nanos) {
+      log(Level.INFO, null, (LongFunction<String>)n -> "latency " + n + "ns", nanos);
+    }
+    
+    static LatencyLoggerService getService() {
+      MethodHandle mh = LoggerServiceSPI.getLoggingMethodHandle(LatencyLoggerService.class,
+          MethodType.methodType(void.class, Level.class, Throwable.class, Object.class, long.class));
+      return (level, context, messageProvider, value) -> {
+        try {
+          mh.invokeExact(level, context, messageProvider, value);
+        } catch(Throwable t) {
+          throw LoggerServiceSPI.rethrow(t);
+        }
+      };
+    }
+  }
+  @Test
+  void testUserDefinedPrimitiveLoggerService() {
+    LatencyLoggerService service = LatencyLoggerService.getService();
+    boolean[] called = { false };
+    LoggerConfig.fromClass(LatencyLoggerService.class).update(opt -> opt.printFactory(printer((message, level, context) -> {
+      called[0] = true;
+      assertAll(  
+        () -> assertEquals(Level.INFO, level),
+        () -> assertEquals("latency 123456789ns", message),
+        () -> assertNull(context)
+        );
+    })));
+    service.latency(123_456_789L);
+    assertTrue(called[0]);
+  }
 }
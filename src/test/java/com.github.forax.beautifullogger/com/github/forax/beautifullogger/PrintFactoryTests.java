@@ -0,0 +1,778 @@
+package com.github.forax.beautifullogger;
+
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.async;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.atLevel;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.binaryLog;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.channel;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.charSequencePrinter;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.deduplicate;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.groupCommit;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.jfr;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.json;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.mappedFile;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.printer;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.rollingFile;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.systemLogger;
+import static com.github.forax.beautifullogger.LoggerConfig.PrintFactory.tee;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.forax.beautifullogger.Logger.Level;
+import com.github.forax.beautifullogger.LoggerConfig.AsyncPrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.BinaryLogPrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.CommitPolicy;
+import com.github.forax.beautifullogger.LoggerConfig.GroupCommitPrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.MappedFilePrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.OverflowPolicy;
+import com.github.forax.beautifullogger.LoggerConfig.PrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.RollingFilePrintFactory;
+import com.github.forax.beautifullogger.LoggerConfig.RollingPolicy;
+
+@SuppressWarnings("static-method")
+class PrintFactoryTests {
+  @Test
+  void systemLoggerReportsTheCallerAsSource() {
+    Class<?> configClass = new Object() {/*empty*/}.getClass();
+    List<String> sources = new ArrayList<>();
+    java.util.logging.Logger julLogger = java.util.logging.Logger.getLogger(configClass.getName());
+    Handler handler = new Handler() {
+      @Override
+      public void publish(LogRecord record) {
+        // the source is inferred lazily from the stack of the current thread
+        sources.add(record.getSourceClassName() + "#" + record.getSourceMethodName());
+      }
+      @Override
+      public void flush() { /* empty */ }
+      @Override
+      public void close() { /* empty */ }
+    };
+    julLogger.setUseParentHandlers(false);
+    julLogger.addHandler(handler);
+    try {
+      Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(systemLogger()));
+      logger.error(() -> "hello");
+      logger.error("hello", null);
+      logger.error((int value) -> "hello " + value, 42);
+      String source = PrintFactoryTests.class.getName() + "#systemLoggerReportsTheCallerAsSource";
+      assertEquals(List.of(source, source, source), sources);
+    } finally {
+      julLogger.removeHandler(handler);
+    }
+  }
+
+  @Test
+  void asyncPrintOnAnotherThread() throws InterruptedException {
+    Thread thread = Thread.currentThread();
+    CountDownLatch latch = new CountDownLatch(1);
+    Logger logger = Logger.getLogger(
+        new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(async(printer((message, level, context) -> {
+          assertAll(
+              () -> assertTrue(thread != Thread.currentThread()),
+              () -> assertEquals(Level.ERROR, level),
+              () -> assertEquals("hello", message),
+              () -> assertNull(context));
+          latch.countDown();
+        }), 16, OverflowPolicy.BLOCK)));
+    logger.error(() -> "hello");
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void asyncBlockDoNotLoseEvents() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(10_000);
+    AsyncPrintFactory factory = async(printer((message, level, context) -> latch.countDown()), 4, OverflowPolicy.BLOCK);
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+    for(int i = 0; i < 10_000; i++) {
+      logger.error((int value) -> "message " + value, i);
+    }
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(0, factory.droppedEventCount());
+  }
+
+  @Test
+  void asyncCloseDeliversQueuedEvents() {
+    List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    AsyncPrintFactory factory = async(printer((message, level, context) -> {
+      try {
+        Thread.sleep(1);  // a slow printer, the events stay in the queue
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      messages.add(message);
+    }), 256, OverflowPolicy.BLOCK);
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+    for(int i = 0; i < 100; i++) {
+      logger.error((int value) -> "message " + value, i);
+    }
+    factory.close();
+    assertEquals(IntStream.range(0, 100).mapToObj(i -> "message " + i).collect(Collectors.toList()), messages);
+    
+    logger.error(() -> "after close");  // printed by the caller
+    assertEquals("after close", messages.get(100));
+  }
+
+  @Test
+  void asyncFlushWaitsForQueuedEvents() {
+    List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    AsyncPrintFactory factory = async(printer((message, level, context) -> messages.add(message)), 4, OverflowPolicy.BLOCK);
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+    for(int i = 0; i < 1_000; i++) {
+      logger.error((int value) -> "message " + value, i);
+      if (i % 100 == 99) {
+        factory.flush();
+        assertEquals(i + 1, messages.size());
+      }
+    }
+    factory.close();
+  }
+
+  @Test
+  void asyncDropNewestCountDroppedEvents() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch latch = new CountDownLatch(1);
+    AsyncPrintFactory factory = async(printer((message, level, context) -> {
+      latch.countDown();
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+    }), 2, OverflowPolicy.DROP_NEWEST);
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+    logger.error(() -> "first");
+    assertTrue(latch.await(5, TimeUnit.SECONDS));   // the consumer is now blocked
+    for(int i = 0; i < 10; i++) {
+      logger.error(() -> "message");
+    }
+    blocked.countDown();
+    assertEquals(8, factory.droppedEventCount());
+  }
+
+  @Test
+  void asyncCallerRunsWhenFull() throws InterruptedException {
+    Thread thread = Thread.currentThread();
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch latch = new CountDownLatch(1);
+    int[] callerRuns = { 0 };
+    AsyncPrintFactory factory = async(printer((message, level, context) -> {
+      if (Thread.currentThread() == thread) {
+        callerRuns[0]++;
+        return;
+      }
+      latch.countDown();
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+    }), 2, OverflowPolicy.CALLER_RUNS);
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+    logger.error(() -> "first");
+    assertTrue(latch.await(5, TimeUnit.SECONDS));   // the consumer is now blocked
+    for(int i = 0; i < 5; i++) {
+      logger.error(() -> "message");
+    }
+    blocked.countDown();
+    assertAll(
+        () -> assertEquals(3, callerRuns[0]),
+        () -> assertEquals(0, factory.droppedEventCount()));
+  }
+  
+  private static List<String> readLines(Path path) throws IOException {
+    // remove the zeroes at the end of each region
+    return Files.readAllLines(path).stream()
+        .map(line -> line.replace("\0", ""))
+        .filter(line -> !line.isEmpty())
+        .collect(Collectors.toList());
+  }
+  
+  @Test
+  void mappedFileRollRegions() throws IOException {
+    Path path = Files.createTempFile("mapped-file", ".log");
+    try {
+      Class<?> configClass = new Object() {/*empty*/}.getClass();
+      try(MappedFilePrintFactory factory = mappedFile(path, 256)) {
+        Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(factory));
+        for(int i = 0; i < 100; i++) {
+          logger.error((int value) -> "message " + value, i);
+        }
+      }
+      List<String> lines = readLines(path);
+      assertEquals(100, lines.size());
+      for(int i = 0; i < 100; i++) {
+        assertTrue(lines.get(i).endsWith(" ERROR " + configClass.getName() + " message " + i), lines.get(i));
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void mappedFileRecordBiggerThanARegion() throws IOException {
+    Path path = Files.createTempFile("mapped-file", ".log");
+    try {
+      String big = "x".repeat(1_000);
+      try(MappedFilePrintFactory factory = mappedFile(path, 256)) {
+        Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+        logger.error(() -> "before");
+        logger.error((String value) -> value, big);
+        logger.error(() -> "after");
+      }
+      List<String> lines = readLines(path);
+      assertAll(
+          () -> assertEquals(3, lines.size()),
+          () -> assertTrue(lines.get(0).endsWith(" before")),
+          () -> assertTrue(lines.get(1).endsWith(" " + big)),
+          () -> assertTrue(lines.get(2).endsWith(" after")));
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void mappedFileConcurrentWriters() throws IOException, InterruptedException {
+    Path path = Files.createTempFile("mapped-file", ".log");
+    try {
+      try(MappedFilePrintFactory factory = mappedFile(path, 1024)) {
+        Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+        List<Thread> threads = IntStream.range(0, 4)
+            .mapToObj(id -> new Thread(() -> {
+              for(int i = 0; i < 1_000; i++) {
+                logger.info((int value) -> "message " + value, id);
+              }
+            }))
+            .collect(Collectors.toList());
+        threads.forEach(Thread::start);
+        for(Thread thread: threads) {
+          thread.join();
+        }
+      }
+      assertEquals(4_000, readLines(path).size());
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void mappedFileCloseTruncatesTheFile() throws IOException {
+    Path path = Files.createTempFile("mapped-file", ".log");
+    try {
+      for(int session = 0; session < 2; session++) {
+        MappedFilePrintFactory factory = mappedFile(path, 4_096);
+        Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+        for(int i = 0; i < 3; i++) {
+          logger.info((int value) -> "message " + value, i);
+        }
+        factory.close();
+        assertThrows(IllegalStateException.class, () -> logger.info(() -> "after close"));
+      }
+      String text = Files.readString(path);
+      assertAll(
+          () -> assertEquals(-1, text.indexOf('\0')),
+          () -> assertEquals(6, text.lines().count()));
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void groupCommitSyncOnError() throws IOException {
+    Path path = Files.createTempFile("group-commit", ".log");
+    try {
+      try(GroupCommitPrintFactory factory = groupCommit(path, CommitPolicy.everyEvents(1_000).syncOnError())) {
+        Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+        for(int i = 0; i < 5; i++) {
+          logger.info((int value) -> "message " + value, i);
+        }
+        logger.error("failure", new Exception());
+        
+        // the error and all the events before it are durable
+        List<String> lines = Files.readAllLines(path);
+        assertAll(
+            () -> assertTrue(lines.get(0).endsWith(" message 0")),
+            () -> assertTrue(lines.get(4).endsWith(" message 4")),
+            () -> assertTrue(lines.get(5).contains(" ERROR ")),
+            () -> assertTrue(lines.get(6).startsWith("java.lang.Exception")));
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void groupCommitEveryMicros() throws IOException, InterruptedException {
+    Path path = Files.createTempFile("group-commit", ".log");
+    try {
+      try(GroupCommitPrintFactory factory = groupCommit(path, CommitPolicy.everyMicros(1_000).orEveryEvents(100))) {
+        Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+        for(int i = 0; i < 1_000; i++) {
+          logger.info((int value) -> "message " + value, i);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Files.readAllLines(path).size() != 1_000 && System.nanoTime() < deadline) {
+          Thread.sleep(1);
+        }
+        assertEquals(1_000, Files.readAllLines(path).size());
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void groupCommitFlushAndCloseWriteAPartialBatch() throws IOException {
+    Path path = Files.createTempFile("group-commit", ".log");
+    try {
+      GroupCommitPrintFactory factory = groupCommit(path, CommitPolicy.everyEvents(1_000));
+      Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+      try(factory) {
+        logger.info("first", null);
+        factory.flush();
+        assertEquals(1, Files.readAllLines(path).size());
+        for(int i = 0; i < 5; i++) {
+          logger.info((int value) -> "message " + value, i);
+        }
+      }
+      
+      // the 5 events are less than a batch, close() writes them
+      List<String> lines = Files.readAllLines(path);
+      assertAll(
+          () -> assertEquals(6, lines.size()),
+          () -> assertTrue(lines.get(5).endsWith(" message 4"), lines.get(5)),
+          () -> assertThrows(IllegalStateException.class, () -> logger.info("closed", null)));
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void binaryLogDecode() throws IOException {
+    Path path = Files.createTempFile("binary-log", ".bin");
+    try {
+      try(BinaryLogPrintFactory factory = binaryLog(path, 4_096)) {
+        Class<?> configClass = new Object() {/*empty*/}.getClass();
+        Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(factory));
+        for(int i = 0; i < 3; i++) {
+          int captured = i;  // a value only known at runtime
+          logger.info((int value) -> "int " + value, i);
+          logger.info((long value) -> "long " + value, -1L << 40);
+          logger.info((double value) -> "double " + value, 2.5);
+          logger.info((String a, String b) -> a + b, "foo", "bar");
+          logger.info((Object value) -> "object " + value, Level.INFO);
+          logger.info(() -> "captured " + captured);
+        }
+        // two message providers with the same functional interface
+        logger.info(() -> "supplier1");
+        logger.info(() -> "supplier2");
+        // two message providers with the same functional interface at the same call site
+        for(Supplier<String> supplier: List.<Supplier<String>>of(() -> "lambda1", () -> "lambda2")) {
+          logger.info(supplier);
+        }
+        logger.error("error", new Exception());
+        
+        StringBuilder builder = new StringBuilder();
+        factory.decode(builder);
+        List<String> lines = Arrays.stream(builder.toString().split("\n"))
+            .filter(line -> !line.startsWith("\t") && !line.startsWith("java."))
+            .collect(Collectors.toList());
+        assertEquals(23, lines.size(), lines::toString);
+        assertAll(
+            () -> assertTrue(lines.get(0).endsWith(" INFO " + configClass.getName() + " int 0")),
+            () -> assertTrue(lines.get(6).endsWith(" int 1")),
+            () -> assertTrue(lines.get(7).endsWith(" long " + (-1L << 40))),
+            () -> assertTrue(lines.get(8).endsWith(" double 2.5")),
+            () -> assertTrue(lines.get(9).endsWith(" foobar")),
+            () -> assertTrue(lines.get(10).endsWith(" object INFO")),
+            () -> assertTrue(lines.get(5).endsWith(" captured 0")),
+            () -> assertTrue(lines.get(11).endsWith(" captured 1")),
+            () -> assertTrue(lines.get(17).endsWith(" captured 2")),
+            () -> assertTrue(lines.get(18).endsWith(" supplier1")),
+            () -> assertTrue(lines.get(19).endsWith(" supplier2")),
+            () -> assertTrue(lines.get(20).endsWith(" lambda1")),
+            () -> assertTrue(lines.get(21).endsWith(" lambda2")),
+            () -> assertTrue(lines.get(22).endsWith(" error")));
+        
+        // offline, the message providers are not available
+        StringBuilder offline = new StringBuilder();
+        BinaryLogPrintFactory.decode(path, offline);
+        String line = offline.toString().split("\n")[6];
+        assertTrue(line.endsWith("[1]"), line);
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void binaryLogFullDictionary() throws IOException {
+    Path path = Files.createTempFile("binary-log", ".bin");
+    try {
+      try(BinaryLogPrintFactory factory = binaryLog(path, 4_096)) {
+        Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+        for(int i = 0; i < 5_000; i++) {
+          logger.info((String value) -> value, "value " + i);  // fill the dictionary
+        }
+        Class<?> configClass = new Object() {/*empty*/}.getClass();
+        Logger logger2 = Logger.getLogger(configClass, opt -> opt.printFactory(factory));
+        logger2.info((String value) -> value, "event");
+        logger2.info("message", null);
+        
+        StringBuilder builder = new StringBuilder();
+        factory.decode(builder);
+        String[] lines = builder.toString().split("\n");
+        assertAll(
+            () -> assertEquals(5_002, lines.length),
+            () -> assertTrue(lines[4_999].endsWith(" value 4999"), lines[4_999]),
+            () -> assertTrue(lines[5_000].endsWith(" INFO " + configClass.getName() + " event"), lines[5_000]),
+            () -> assertTrue(lines[5_001].endsWith(" INFO " + configClass.getName() + " message"), lines[5_001]));
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+  
+  @Test
+  void jsonEvents() {
+    StringWriter writer = new StringWriter();
+    Class<?> configClass = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(json(writer)));
+    logger.event(Level.INFO, "order", fields -> fields
+        .field("id", 42L)
+        .field("amount", 2.5)
+        .field("paid", true)
+        .field("name", "a\"b\n"));
+    logger.error(() -> "message");
+    logger.event(Level.DEBUG, "disabled", fields -> fail("the fields should not be written"));
+    
+    String prefix = ",\"logger\":\"" + configClass.getName() + "\",";
+    String[] lines = writer.toString().split("\n");
+    assertEquals(2, lines.length);
+    assertAll(
+        () -> assertTrue(lines[0].startsWith("{\"time\":")),
+        () -> assertTrue(lines[0].endsWith(",\"level\":\"INFO\"" + prefix +
+            "\"event\":\"order\",\"id\":42,\"amount\":2.5,\"paid\":true,\"name\":\"a\\\"b\\n\"}"), lines[0]),
+        () -> assertTrue(lines[1].endsWith(",\"level\":\"ERROR\"" + prefix + "\"message\":\"message\"}"), lines[1]));
+  }
+  
+  @Test
+  void eventWithoutStructuredPrintFactory() {
+    StringBuilder builder = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(printer((message, level, context) -> builder.append(message))));
+    logger.event(Level.ERROR, "order", fields -> fields.field("id", 42L).field("paid", false));
+    assertEquals("order id=42 paid=false", builder.toString());
+  }
+  
+  @Test
+  void deduplicateRepeatedEvents() throws InterruptedException {
+    List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(deduplicate(printer((message, level, context) -> messages.add(message)), Duration.ofMillis(500))));
+    int[] calls = { 0 };
+    Supplier<String> supplier = () -> "message " + ++calls[0];
+    for(int i = 0; i < 5; i++) {
+      logger.error(supplier);
+      logger.error("failure", new IOException());
+    }
+    logger.error("failure", new IllegalStateException());  // not the same exception
+    Thread.sleep(600);
+    logger.error(supplier);
+    
+    String summary = "repeated 4 times: ERROR message provider " + supplier.getClass().getName();
+    assertAll(
+        () -> assertEquals(List.of("message 1", "failure", "failure"), messages.subList(0, 3)),
+        () -> assertTrue(messages.indexOf(summary) >= 3, messages::toString),
+        () -> assertTrue(messages.indexOf("message 2") > messages.indexOf(summary), messages::toString),
+        () -> assertEquals(2, calls[0]));
+  }
+  
+  @Test
+  void teeWithLevels() {
+    StringBuilder all = new StringBuilder();
+    StringBuilder warnings = new StringBuilder();
+    StringBuilder errors = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.level(Level.DEBUG).printFactory(tee(
+            printer((message, level, context) -> all.append(message).append(' ')),
+            atLevel(Level.WARNING, printer((message, level, context) -> warnings.append(message).append(' '))),
+            atLevel(Level.ERROR, printer((message, level, context) -> errors.append(message).append(' '))))));
+    logger.trace("trace", null);
+    logger.debug("debug", null);
+    logger.info(() -> "info");
+    logger.warning((int value) -> "warning" + value, 1);
+    logger.error("error", null);
+    assertAll(
+        () -> assertEquals("debug info warning1 error ", all.toString()),
+        () -> assertEquals("warning1 error ", warnings.toString()),
+        () -> assertEquals("error ", errors.toString()));
+  }
+  
+  @Test
+  void deduplicateSharedByTwoConfigClasses() {
+    List<String> messages = new ArrayList<>();
+    PrintFactory factory = deduplicate(
+        configClass -> printer((message, level, context) -> messages.add(configClass.getName() + " " + message)).getPrintMethodHandle(configClass),
+        Duration.ofMinutes(1));
+    Class<?> configClass1 = new Object() {/*empty*/}.getClass();
+    Class<?> configClass2 = new Object() {/*empty*/}.getClass();
+    Logger logger1 = Logger.getLogger(configClass1, opt -> opt.printFactory(factory));
+    Logger logger2 = Logger.getLogger(configClass2, opt -> opt.printFactory(factory));
+    for(int i = 0; i < 3; i++) {
+      logger1.error("failure", null);
+      logger2.error("failure", null);
+    }
+    // the windows of the two classes may collide in the table, then the events of the second class are all printed
+    assertAll(
+        () -> assertEquals(List.of(configClass1.getName() + " failure", configClass2.getName() + " failure"), messages.subList(0, 2)),
+        () -> assertTrue(messages.stream().skip(2).allMatch(message -> message.equals(configClass2.getName() + " failure")), messages::toString));
+  }
+  
+  @Test
+  void deduplicateInsideATee() {
+    List<String> deduplicated = new ArrayList<>();
+    List<String> all = new ArrayList<>();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(tee(
+            deduplicate(printer((message, level, context) -> deduplicated.add(message)), Duration.ofMinutes(1)),
+            printer((message, level, context) -> all.add(message)))));
+    for(int i = 0; i < 3; i++) {
+      logger.error("failure", null);
+      logger.error((int value) -> "failure " + value, i);
+    }
+    assertAll(
+        () -> assertEquals(List.of("failure", "failure 0", "failure 1", "failure 2"), deduplicated),
+        () -> assertEquals(List.of("failure", "failure 0", "failure", "failure 1", "failure", "failure 2"), all));
+  }
+  
+  @Test
+  void deduplicateAtLevel() {
+    List<String> messages = new ArrayList<>();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(atLevel(Level.WARNING,
+            deduplicate(printer((message, level, context) -> messages.add(message)), Duration.ofMinutes(1)))));
+    int[] calls = { 0 };
+    logger.info(() -> fail("below the level of the sink"));
+    for(int i = 0; i < 3; i++) {
+      logger.warning(() -> "warning " + calls[0]++);
+    }
+    assertAll(
+        () -> assertEquals(List.of("warning 0"), messages),
+        () -> assertEquals(1, calls[0]));
+  }
+  
+  // the lines of the segments name.1, name.2, etc, compressed or not
+  private static List<String> readSegments(Path directory, String name) throws IOException {
+    ArrayList<String> lines = new ArrayList<>();
+    for(int index = 1;; index++) {
+      Path segment = directory.resolve(name + "." + index);
+      Path compressed = directory.resolve(name + "." + index + ".gz");
+      if (Files.exists(segment)) {
+        lines.addAll(Files.readAllLines(segment, UTF_8));
+      } else if (Files.exists(compressed)) {
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(compressed)), UTF_8))) {
+          reader.lines().forEach(lines::add);
+        }
+      } else {
+        return lines;
+      }
+    }
+  }
+  
+  private static void deleteDirectory(Path directory) throws IOException {
+    try(Stream<Path> files = Files.list(directory)) {
+      for(Path file: (Iterable<Path>)files::iterator) {
+        Files.deleteIfExists(file);
+      }
+    }
+    Files.delete(directory);
+  }
+  
+  @Test
+  void rollingFileBySizeCompressesTheSegments() throws IOException {
+    Path directory = Files.createTempDirectory("rolling");
+    try {
+      Class<?> configClass = new Object() {/*empty*/}.getClass();
+      try(RollingFilePrintFactory factory = rollingFile(directory.resolve("app.log"), RollingPolicy.everyBytes(256))) {
+        Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(factory));
+        for(int i = 0; i < 100; i++) {
+          logger.error((int value) -> "message " + value, i);
+        }
+      }
+      
+      // close() compresses the last segment and deletes the segment opened in advance
+      List<String> lines = readSegments(directory, "app.log");
+      String[] files = directory.toFile().list();
+      assertAll(
+          () -> assertEquals(100, lines.size()),
+          () -> assertTrue(Arrays.stream(files).allMatch(file -> file.endsWith(".gz")), Arrays.toString(files)));
+      for(int i = 0; i < 100; i++) {
+        assertTrue(lines.get(i).endsWith(" ERROR " + configClass.getName() + " message " + i), lines.get(i));
+      }
+    } finally {
+      deleteDirectory(directory);
+    }
+  }
+  
+  @Test
+  void rollingFileByTime() throws IOException, InterruptedException {
+    Path directory = Files.createTempDirectory("rolling");
+    try {
+      RollingFilePrintFactory factory = rollingFile(directory.resolve("app.log"), RollingPolicy.every(Duration.ofMillis(100)).withoutCompression());
+      Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(), opt -> opt.printFactory(factory));
+      try(factory) {
+        logger.error("first", null);
+        Thread.sleep(200);
+        logger.error("second", null);  // the segment is too old, it is replaced before the write
+        logger.error("third", null);
+      }
+      
+      List<String> segment1 = Files.readAllLines(directory.resolve("app.log.1"), UTF_8);
+      List<String> segment2 = Files.readAllLines(directory.resolve("app.log.2"), UTF_8);
+      assertAll(
+          () -> assertEquals(1, segment1.size()),
+          () -> assertTrue(segment1.get(0).endsWith(" first"), segment1.get(0)),
+          () -> assertEquals(2, segment2.size()),
+          () -> assertTrue(segment2.get(0).endsWith(" second"), segment2.get(0)),
+          () -> assertTrue(segment2.get(1).endsWith(" third"), segment2.get(1)),
+          () -> assertFalse(Files.exists(directory.resolve("app.log.3"))),
+          () -> assertFalse(Files.exists(directory.resolve("app.log.1.gz"))),
+          () -> assertThrows(IllegalStateException.class, () -> logger.error("closed", null)));
+    } finally {
+      deleteDirectory(directory);
+    }
+  }
+  
+  @Test
+  void channelEncodesUTF8() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Class<?> configClass = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(channel(Channels.newChannel(output))));
+    logger.error("ascii", null);
+    logger.warning((int value) -> "d\u00e9j\u00e0 vu \u2603 \ud83d\ude00 " + value, 3);
+    logger.info("x".repeat(20_000), null);
+    
+    String[] lines = new String(output.toByteArray(), UTF_8).split("\n");
+    assertEquals(3, lines.length);
+    assertAll(
+        () -> assertTrue(lines[0].matches("[0-9]+ ERROR " + configClass.getName().replace("$", "\\$") + " ascii"), lines[0]),
+        () -> assertTrue(lines[1].endsWith(" WARNING " + configClass.getName() + " d\u00e9j\u00e0 vu \u2603 \ud83d\ude00 3"), lines[1]),
+        () -> assertTrue(lines[2].endsWith(" INFO " + configClass.getName() + " " + "x".repeat(20_000))));
+  }
+  
+  @Test
+  void messageAppenderWithCharSequencePrinter() {
+    ArrayList<String> messages = new ArrayList<>();
+    ArrayList<CharSequence> sequences = new ArrayList<>();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(charSequencePrinter((message, level, context) -> {
+          sequences.add(message);
+          messages.add(message.toString());
+        })));
+    for(int i = 0; i < 3; i++) {
+      logger.error((builder, value) -> builder.append("value ").append(value), i);
+    }
+    logger.error("text", null);
+    assertAll(
+        () -> assertEquals(List.of("value 0", "value 1", "value 2", "text"), messages),
+        () -> assertFalse(sequences.get(0) instanceof String),
+        () -> assertTrue(sequences.get(0) == sequences.get(2)));   // the builder is reused
+  }
+  
+  @Test
+  void messageAppenderWithPrinter() {
+    StringBuilder text = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(printer((message, level, context) -> text.append(message).append('|'))));
+    logger.warning((StringBuilder builder, String value) -> builder.append(value.length()), "hello");
+    logger.debug((builder, value) -> fail("disabled"), "hello");
+    assertEquals("5|", text.toString());
+  }
+  
+  @Test
+  void messageAppenderThatLogs() {
+    StringBuilder text = new StringBuilder();
+    Logger logger = Logger.getLogger(new Object() {/*empty*/}.getClass(),
+        opt -> opt.printFactory(charSequencePrinter((message, level, context) -> text.append(message).append('|'))));
+    logger.error((StringBuilder builder, Logger inner) -> {
+      builder.append("outer");
+      inner.error((b, v) -> b.append(v), "inner");
+      builder.append(" end");
+    }, logger);
+    assertEquals("inner|outer end|", text.toString());
+  }
+  
+  @Test
+  void jfrEvents() throws IOException {
+    Class<?> configClass = new Object() {/*empty*/}.getClass();
+    Logger logger = Logger.getLogger(configClass, opt -> opt.printFactory(jfr()));
+    logger.error(() -> fail("no recording, the message provider should not be called"));
+    
+    Path path = Files.createTempFile("logger", ".jfr");
+    try {
+      try(Recording recording = new Recording()) {
+        recording.enable("com.github.forax.beautifullogger.Log");
+        recording.enable("com.github.forax.beautifullogger.Relink");
+        recording.enable("com.github.forax.beautifullogger.Invalidation");
+        recording.start();
+        logger.error((int value) -> "message " + value, 42);
+        LoggerConfig.fromClass(configClass).update(opt -> opt.level(Level.DEBUG));
+        logger.debug("debug", new IllegalStateException("oops"));
+        recording.stop();
+        recording.dump(path);
+      }
+      List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+      Map<String, List<RecordedEvent>> eventMap = events.stream()
+          .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+      List<RecordedEvent> logEvents = eventMap.get("com.github.forax.beautifullogger.Log");
+      assertAll(
+          () -> assertEquals(2, logEvents.size()),
+          () -> assertEquals("message 42", logEvents.get(0).getString("message")),
+          () -> assertEquals("ERROR", logEvents.get(0).getString("level")),
+          () -> assertEquals(configClass.getName(), logEvents.get(0).getClass("configClass").getName()),
+          () -> assertEquals("DEBUG", logEvents.get(1).getString("level")),
+          () -> assertEquals("java.lang.IllegalStateException: oops", logEvents.get(1).getString("exception")),
+          () -> assertTrue(eventMap.get("com.github.forax.beautifullogger.Relink").stream()
+              .anyMatch(event -> event.getClass("configClass").getName().equals(configClass.getName()))),
+          () -> assertTrue(eventMap.containsKey("com.github.forax.beautifullogger.Invalidation")));
+    } finally {
+      Files.delete(path);
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.github.forax.beautifullogger.parentconfig.parent.child;
+
+// a class only used as a config class, the configurations of its packages are owned by the test
+// LoggerConfigurationTests.loggerParentPackageConfig, so they do not impact the other tests
+public class ChildPackageClass {
+  private ChildPackageClass() {
+    throw new AssertionError();
+  }
+}
@@ -1,4 +1,7 @@
 open module com.github.forax.beautifullogger {
   requires org.junit.jupiter.api;
   requires org.junit.jupiter.params;
+  requires java.logging;
+  requires java.management;
+  requires jdk.jfr;
 }